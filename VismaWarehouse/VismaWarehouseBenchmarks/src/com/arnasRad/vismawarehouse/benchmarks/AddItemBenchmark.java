@@ -0,0 +1,48 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Warehouse.addItem for different shares of duplicate items
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AddItemBenchmark {
+
+    private static final int ITEM_COUNT = 100_000;
+
+    @Param({"0", "0.5", "0.9", "0.99"})
+    public double duplicateRatio;
+
+    @Param({"linked", "concurrent", "columnar"})
+    public String storage;
+
+    private Item[] items;
+    private long[] quantities;
+
+    @Setup(Level.Trial)
+    public void createItems() {
+
+        items = BenchmarkData.createItems(ITEM_COUNT, duplicateRatio, 1);
+        quantities = BenchmarkData.createQuantities(ITEM_COUNT, 2);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEM_COUNT)
+    public Warehouse addItems() {
+
+        Warehouse warehouse = BenchmarkData.newWarehouse(storage);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            warehouse.addItem(items[i], quantities[i]);
+        }
+        return warehouse;
+    }
+}
@@ -0,0 +1,109 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+
+import java.util.Random;
+
+/**
+ * In-memory test data shared by benchmarks
+ */
+public class BenchmarkData {
+
+    public static final int FIRST_DAY = DateUtilities.getEpochDay(2015, 1, 1);
+    public static final int DAY_COUNT = 2000;
+    public static final int MAX_QUANTITY = 500;
+
+    /**
+     * Creates items where approximately duplicateRatio of all items repeat
+     * an item that appears earlier in the array
+     *
+     * @param count          number of items
+     * @param duplicateRatio share of duplicates, 0 to 1
+     * @param seed           random generator seed
+     * @return generated items
+     */
+    public static Item[] createItems(int count, double duplicateRatio, long seed) {
+
+        Random random = new Random(seed);
+        Item[] items = new Item[count];
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextDouble() < duplicateRatio) {
+                Item original = items[random.nextInt(i)];
+                items[i] = new Item(original.getCode(), original.getName(),
+                        original.getExpirationDay());
+            } else {
+                items[i] = new Item(String.valueOf(100_000 + i), "Item" + (i % 1000),
+                        FIRST_DAY + random.nextInt(DAY_COUNT));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Creates quantities of 1 to MAX_QUANTITY
+     *
+     * @param count number of quantities
+     * @param seed  random generator seed
+     * @return generated quantities
+     */
+    public static long[] createQuantities(int count, long seed) {
+
+        Random random = new Random(seed);
+        long[] quantities = new long[count];
+        for (int i = 0; i < count; i++) {
+            quantities[i] = 1 + random.nextInt(MAX_QUANTITY);
+        }
+        return quantities;
+    }
+
+    /**
+     * Creates a warehouse of distinct items
+     *
+     * @param warehouse empty warehouse to fill
+     * @param itemCount number of distinct items
+     * @return filled warehouse
+     */
+    public static Warehouse fill(Warehouse warehouse, int itemCount) {
+
+        Item[] items = createItems(itemCount, 0, 1);
+        long[] quantities = createQuantities(itemCount, 2);
+        for (int i = 0; i < itemCount; i++) {
+            warehouse.addItem(items[i], quantities[i]);
+        }
+        return warehouse;
+    }
+
+    /**
+     * Creates a warehouse of distinct items with specified storage engine
+     *
+     * @param storage   storage name: linked, concurrent, columnar or sharded
+     * @param itemCount number of distinct items
+     * @return filled warehouse
+     */
+    public static Warehouse createWarehouse(String storage, int itemCount) {
+
+        return fill(newWarehouse(storage), itemCount);
+    }
+
+    /**
+     * Creates an empty warehouse with specified storage engine
+     *
+     * @param storage storage name: linked, concurrent, columnar or sharded
+     * @return empty warehouse
+     */
+    public static Warehouse newWarehouse(String storage) {
+
+        switch (storage) {
+            case "concurrent":
+                return Warehouse.createConcurrent();
+            case "columnar":
+                return Warehouse.createColumnar();
+            case "sharded":
+                return Warehouse.createSharded(Runtime.getRuntime().availableProcessors());
+            default:
+                return new Warehouse();
+        }
+    }
+}
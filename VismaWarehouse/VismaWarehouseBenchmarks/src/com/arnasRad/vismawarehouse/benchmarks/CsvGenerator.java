@@ -0,0 +1,105 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates synthetic warehouse .csv files with the same columns as sample.csv:
+ * Item Name, Code, Quantity, Expiration Date.
+ *
+ * Every code always has the same name and expires on one of DATES_PER_CODE
+ * dates, so number of distinct items is bounded by codeCount * DATES_PER_CODE
+ * and larger files contain more duplicate rows.
+ */
+public class CsvGenerator {
+
+    public static final String HEADER = "Item Name,Code,Quantity,Expiration Date";
+    public static final int DEFAULT_CODE_COUNT = 100_000;
+    private static final int DATES_PER_CODE = 30;
+    private static final int MAX_QUANTITY = 500;
+    private static final long SEED = 20191104L;
+    private static final String[] NAMES = {
+            "Apples", "Banana", "Lime", "Onions", "Oranges", "Peach",
+            "Pear", "Pineapple", "Tomatoes", "Grapes", "Kiwi", "Melon"
+    };
+    private static final int FIRST_DAY = DateUtilities.getEpochDay(2015, 1, 1);
+
+    /**
+     * Writes a generated .csv file
+     *
+     * @param file      file to write
+     * @param rowCount  number of item rows (column names line excluded)
+     * @param codeCount number of distinct item codes
+     * @param seed      random generator seed; equal seeds produce equal files
+     * @throws IOException thrown if the file cannot be written
+     */
+    public static void generate(Path file, long rowCount, int codeCount, long seed)
+            throws IOException {
+
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(64);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+
+            writer.write(HEADER);
+            writer.write('\n');
+
+            for (long row = 0; row < rowCount; row++) {
+
+                int code = random.nextInt(codeCount);
+                int expirationDay = FIRST_DAY + code % 400 + random.nextInt(DATES_PER_CODE) * 7;
+
+                sb.setLength(0);
+                sb.append(NAMES[code % NAMES.length]).append(',')
+                        .append(100_000L + code * 7L).append(',')
+                        .append(1 + random.nextInt(MAX_QUANTITY)).append(',');
+                DateUtilities.appendEpochDay(sb, expirationDay).append('\n');
+                writer.append(sb);
+            }
+        }
+    }
+
+    /**
+     * Gets a generated file from the temporary directory, generating it
+     * the first time it is requested, so benchmark runs reuse the same data
+     *
+     * @param rowCount  number of item rows
+     * @param codeCount number of distinct item codes
+     * @return path of the generated file
+     * @throws IOException thrown if the file cannot be written
+     */
+    public static Path getOrCreate(long rowCount, int codeCount) throws IOException {
+
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"),
+                "warehouse-" + rowCount + "-" + codeCount + ".csv");
+
+        if (!Files.exists(file)) {
+            Path partial = Paths.get(file + ".tmp");
+            generate(partial, rowCount, codeCount, SEED);
+            Files.move(partial, file);
+        }
+        return file;
+    }
+
+    /**
+     * Command line entry point
+     * Usage: CsvGenerator file rowCount [codeCount]
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            System.out.println("Usage: CsvGenerator <file> <rowCount> [codeCount]");
+            return;
+        }
+
+        int codeCount = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CODE_COUNT;
+        generate(Paths.get(args[0]), Long.parseLong(args[1]), codeCount, SEED);
+    }
+}
@@ -0,0 +1,121 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing and formatting of yyyy-MM-dd dates with SimpleDateFormat,
+ * which the loader used before, and with DateUtilities epoch days.
+ * State is per thread because SimpleDateFormat is not thread-safe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DateBenchmark {
+
+    private static final int DATE_COUNT = 1024;
+    private static final int DATE_LENGTH = 10;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private final StringBuilder sb = new StringBuilder(DATE_LENGTH);
+    private final int[] parts = new int[3];
+
+    private String[] texts;
+    private ByteBuffer bytes;
+    private int[] epochDays;
+    private Date[] dates;
+
+    @Setup(Level.Trial)
+    public void createDates() throws ParseException {
+
+        Random random = new Random(1);
+        texts = new String[DATE_COUNT];
+        epochDays = new int[DATE_COUNT];
+        dates = new Date[DATE_COUNT];
+        bytes = ByteBuffer.allocate(DATE_COUNT * DATE_LENGTH);
+        for (int i = 0; i < DATE_COUNT; i++) {
+            epochDays[i] = BenchmarkData.FIRST_DAY + random.nextInt(BenchmarkData.DAY_COUNT);
+            texts[i] = DateUtilities.formatEpochDay(epochDays[i]);
+            dates[i] = dateFormat.parse(texts[i]);
+            bytes.put(texts[i].getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATE_COUNT)
+    public long parseSimpleDateFormat() throws ParseException {
+
+        long sum = 0;
+        for (String text : texts) {
+            sum += dateFormat.parse(text).getTime();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATE_COUNT)
+    public long parseEpochDay() throws ParseException {
+
+        long sum = 0;
+        for (String text : texts) {
+            sum += DateUtilities.parseEpochDay(text);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATE_COUNT)
+    public long parseEpochDayBytes() throws ParseException {
+
+        long sum = 0;
+        for (int i = 0; i < DATE_COUNT; i++) {
+            sum += DateUtilities.parseEpochDay(bytes, i * DATE_LENGTH, (i + 1) * DATE_LENGTH, parts);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATE_COUNT)
+    public long formatSimpleDateFormat() {
+
+        long length = 0;
+        for (Date date : dates) {
+            length += dateFormat.format(date).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATE_COUNT)
+    public long formatEpochDay() {
+
+        long length = 0;
+        for (int epochDay : epochDays) {
+            length += DateUtilities.formatEpochDay(epochDay).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATE_COUNT)
+    public long appendEpochDay() {
+
+        long length = 0;
+        for (int epochDay : epochDays) {
+            sb.setLength(0);
+            length += DateUtilities.appendEpochDay(sb, epochDay).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,182 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+import com.arnasRad.vismawarehouse.utils.WarehouseServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local load generator of the HTTP query service.
+ * Every client is a thread that sends dashboard queries one after another
+ * over a kept-alive connection, so the number of clients is the number of
+ * concurrent requests. Latencies of all requests are recorded and reported
+ * as percentiles together with throughput.
+ *
+ * Clients wait for each response before sending the next request, so
+ * latencies of requests that would have been sent while the server stalled
+ * are not recorded; percentiles are accurate as long as throughput is stable.
+ */
+public class HttpLoadGenerator {
+
+    private static final int DEFAULT_CLIENT_COUNT = 200;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_ITEM_COUNT = 100_000;
+    private static final int WARMUP_SECONDS = 3;
+    private static final byte[] SKIP_BUFFER = new byte[64 * 1024];
+
+    /**
+     * Command line entry point
+     * Usage: HttpLoadGenerator [clientCount] [seconds] [url]
+     * Without url, starts an embedded server with generated items
+     */
+    public static void main(String[] args) throws Exception {
+
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENT_COUNT;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+
+        WarehouseServer server = null;
+        String url;
+        if (args.length > 2) {
+            url = args[2];
+        } else {
+            Warehouse warehouse = BenchmarkData.createWarehouse("linked", DEFAULT_ITEM_COUNT);
+            WarehouseServer.enableNoDelay();
+            server = new WarehouseServer(0, () -> warehouse);
+            url = "http://localhost:" + server.getPort();
+            System.out.println("Serving " + DEFAULT_ITEM_COUNT + " items with " +
+                    WarehouseServer.DEFAULT_THREAD_COUNT + " threads at " + url);
+        }
+
+        try {
+            run(getRequests(url), clientCount, WARMUP_SECONDS);
+            long[] latencies = run(getRequests(url), clientCount, seconds);
+            report(latencies, clientCount, seconds);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Dashboard queries; each selects a few hundred items of generated data
+     */
+    private static URL[] getRequests(String url) throws IOException {
+
+        String expired = DateUtilities.formatEpochDay(BenchmarkData.FIRST_DAY + 2);
+        String soon = DateUtilities.formatEpochDay(BenchmarkData.FIRST_DAY + BenchmarkData.DAY_COUNT - 3);
+        return new URL[] {
+                new URL(url + "/items?limit=50"),
+                new URL(url + "/items/insufficient?quantity=2"),
+                new URL(url + "/items/expired?date=" + expired),
+                new URL(url + "/items/soon-to-expire?date=" + soon)
+        };
+    }
+
+    /**
+     * Sends requests from clientCount threads for specified time
+     * @return latencies of all requests in nanoseconds, sorted
+     */
+    private static long[] run(URL[] requests, int clientCount, int seconds) throws InterruptedException {
+
+        long[][] latencies = new long[clientCount][];
+        int[] counts = new int[clientCount];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+
+        Thread[] clients = new Thread[clientCount];
+        for (int c = 0; c < clientCount; c++) {
+            int client = c;
+            clients[c] = new Thread(() -> {
+                long[] recorded = new long[1024];
+                int count = 0;
+                try {
+                    start.await();
+                    for (int i = client; System.nanoTime() < end; i++) {
+                        long begin = System.nanoTime();
+                        if (!send(requests[i % requests.length])) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == recorded.length) {
+                            recorded = Arrays.copyOf(recorded, count * 2);
+                        }
+                        recorded[count++] = System.nanoTime() - begin;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latencies[client] = recorded;
+                counts[client] = count;
+            }, "load-client-" + c);
+            clients[c].start();
+        }
+
+        start.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+        if (errors.get() > 0) {
+            System.out.println("Failed requests: " + errors.get());
+        }
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] result = new long[total];
+        int position = 0;
+        for (int c = 0; c < clientCount; c++) {
+            System.arraycopy(latencies[c], 0, result, position, counts[c]);
+            position += counts[c];
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Sends a request and reads the whole response, so the connection is reused
+     * @return true if the server answered with status 200
+     */
+    private static boolean send(URL url) {
+
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            int status = connection.getResponseCode();
+            try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                while (input != null && input.read(SKIP_BUFFER) >= 0) {
+                    // response body is not needed
+                }
+            }
+            return status == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void report(long[] latencies, int clientCount, int seconds) {
+
+        System.out.println("Clients: " + clientCount + ", requests: " + latencies.length +
+                ", throughput: " + latencies.length / seconds + " requests/s");
+        if (latencies.length == 0) {
+            return;
+        }
+        System.out.printf("Latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                getPercentile(latencies, 0.5), getPercentile(latencies, 0.9),
+                getPercentile(latencies, 0.99), getPercentile(latencies, 0.999),
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static double getPercentile(long[] sortedLatencies, double percentile) {
+
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+}
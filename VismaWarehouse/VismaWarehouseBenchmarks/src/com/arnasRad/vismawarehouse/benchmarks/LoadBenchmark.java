@@ -0,0 +1,51 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.PipelinedCsvLoader;
+import com.arnasRad.vismawarehouse.utils.Utilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading generated .csv files with every loader mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class LoadBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public long rowCount;
+
+    @Param({"buffered", "mapped", "parallel", "pipelined"})
+    public String loader;
+
+    private String fileName;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+
+        fileName = CsvGenerator.getOrCreate(rowCount, CsvGenerator.DEFAULT_CODE_COUNT).toString();
+    }
+
+    @Benchmark
+    public Warehouse load() throws IOException, ParseException {
+
+        switch (loader) {
+            case "mapped":
+                return Utilities.loadWarehouseItemsMapped(fileName);
+            case "parallel":
+                return Utilities.loadWarehouseItemsParallel(fileName);
+            case "pipelined":
+                return new PipelinedCsvLoader().load(fileName);
+            default:
+                return Utilities.loadWarehouseItems(fileName);
+        }
+    }
+}
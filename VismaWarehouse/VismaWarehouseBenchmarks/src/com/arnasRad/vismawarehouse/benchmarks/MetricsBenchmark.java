@@ -0,0 +1,90 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.LinkedItemStorage;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.Metrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures overhead of metrics on instrumented Warehouse operations,
+ * with metrics disabled and enabled. Baseline benchmarks call the storage
+ * behind the warehouse directly, so they show the cost of the Warehouse
+ * wrapper itself; they do not depend on the metrics parameter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MetricsBenchmark {
+
+    private static final int ITEM_COUNT = 100_000;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private Item[] items;
+    private long[] quantities;
+    private Warehouse warehouse;
+    private LinkedItemStorage storage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        Metrics.setEnabled(metrics);
+        items = BenchmarkData.createItems(ITEM_COUNT, 0.5, 1);
+        quantities = BenchmarkData.createQuantities(ITEM_COUNT, 2);
+        storage = new LinkedItemStorage();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            storage.addItem(items[i], quantities[i]);
+        }
+        // queried through the wrapper and directly, so both see the same items
+        warehouse = new Warehouse(storage);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEM_COUNT)
+    public Warehouse addItems() {
+
+        Warehouse added = BenchmarkData.newWarehouse("linked");
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            added.addItem(items[i], quantities[i]);
+        }
+        return added;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEM_COUNT)
+    public LinkedItemStorage addItemsBaseline() {
+
+        LinkedItemStorage added = new LinkedItemStorage();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            added.addItem(items[i], quantities[i]);
+        }
+        return added;
+    }
+
+    @Benchmark
+    public LinkedHashMap<Item, Long> insufficientQuantityItems() {
+
+        return warehouse.getInsufficientQuantityItems(2);
+    }
+
+    @Benchmark
+    public LinkedHashMap<Item, Long> insufficientQuantityItemsBaseline() {
+
+        return storage.getInsufficientQuantityItems(2);
+    }
+}
@@ -0,0 +1,108 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.ItemFilter;
+import com.arnasRad.vismawarehouse.model.ItemOrder;
+import com.arnasRad.vismawarehouse.model.ItemPage;
+import com.arnasRad.vismawarehouse.model.QueryEngine;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures warehouse filter queries.
+ * Thresholds select about 1% of all items
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class QueryBenchmark {
+
+    @Param({"1000000"})
+    public int itemCount;
+
+    @Param({"linked", "concurrent", "columnar", "sharded"})
+    public String storage;
+
+    private Warehouse warehouse;
+    private long quantity;
+    private LocalDate expiredDueDate;
+    private LocalDate soonToExpireDueDate;
+
+    @Setup(Level.Trial)
+    public void createWarehouse() {
+
+        warehouse = BenchmarkData.createWarehouse(storage, itemCount);
+        quantity = BenchmarkData.MAX_QUANTITY / 100;
+        expiredDueDate = LocalDate.ofEpochDay(BenchmarkData.FIRST_DAY + BenchmarkData.DAY_COUNT / 100);
+        soonToExpireDueDate = LocalDate.ofEpochDay(BenchmarkData.FIRST_DAY +
+                BenchmarkData.DAY_COUNT - BenchmarkData.DAY_COUNT / 100);
+    }
+
+    @Benchmark
+    public LinkedHashMap<Item, Long> insufficientQuantity() {
+
+        return warehouse.getInsufficientQuantityItems(quantity);
+    }
+
+    @Benchmark
+    public LinkedHashMap<Item, Long> expired() {
+
+        return warehouse.getExpiredItems(expiredDueDate);
+    }
+
+    @Benchmark
+    public LinkedHashMap<Item, Long> soonToExpire() {
+
+        return warehouse.getSoonToExpireItems(soonToExpireDueDate);
+    }
+
+    @Benchmark
+    public int dailyReportSeparateQueries() {
+
+        return warehouse.getInsufficientQuantityItems(quantity).size() +
+                warehouse.getExpiredItems(expiredDueDate).size() +
+                warehouse.getSoonToExpireItems(soonToExpireDueDate).size();
+    }
+
+    @Benchmark
+    public int dailyReportSinglePass() {
+
+        QueryEngine engine = new QueryEngine();
+        LinkedHashMap<Item, Long> insufficient = engine.addQuery(ItemFilter.quantityBelow(quantity));
+        LinkedHashMap<Item, Long> expired = engine.addQuery(
+                ItemFilter.expiresBy((int) expiredDueDate.toEpochDay()));
+        LinkedHashMap<Item, Long> soonToExpire = engine.addQuery(
+                ItemFilter.expiresAfter((int) soonToExpireDueDate.toEpochDay()));
+        engine.run(warehouse);
+        return insufficient.size() + expired.size() + soonToExpire.size();
+    }
+
+    @Benchmark
+    public LinkedHashMap<Item, Long> lowestQuantitiesTopK() {
+
+        return warehouse.getTopItems(ItemFilter.all(), ItemOrder.QUANTITY, 50);
+    }
+
+    @Benchmark
+    public Item[] lowestQuantitiesFullSort() {
+
+        Item[] items = warehouse.getItems().keySet().toArray(new Item[0]);
+        Arrays.sort(items, Comparator.comparingLong(warehouse::getQuantity));
+        return Arrays.copyOf(items, 50);
+    }
+
+    @Benchmark
+    public ItemPage firstPage() {
+
+        return warehouse.getPage(null, 50);
+    }
+}
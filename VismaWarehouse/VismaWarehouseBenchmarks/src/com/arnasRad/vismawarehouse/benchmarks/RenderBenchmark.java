@@ -0,0 +1,49 @@
+package com.arnasRad.vismawarehouse.benchmarks;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.Utilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering of sorted item reports,
+ * both built in memory and streamed to a writer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RenderBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int itemCount;
+
+    private LinkedHashMap<Item, Long> items;
+
+    @Setup(Level.Trial)
+    public void createItems() {
+
+        items = BenchmarkData.createWarehouse("linked", itemCount).getItems();
+    }
+
+    @Benchmark
+    public String itemMapString() {
+
+        return Utilities.getItemMapString(items, "Items in Warehouse");
+    }
+
+    @Benchmark
+    public Writer writeItemMap() throws IOException {
+
+        Writer writer = Writer.nullWriter();
+        Utilities.writeItemMap(items, "Items in Warehouse", writer);
+        return writer;
+    }
+}
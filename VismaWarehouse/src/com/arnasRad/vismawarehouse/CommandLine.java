@@ -0,0 +1,441 @@
+package com.arnasRad.vismawarehouse;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.ItemAggregation;
+import com.arnasRad.vismawarehouse.model.ItemFilter;
+import com.arnasRad.vismawarehouse.model.ItemGrouping;
+import com.arnasRad.vismawarehouse.model.ItemOrder;
+import com.arnasRad.vismawarehouse.model.ItemPage;
+import com.arnasRad.vismawarehouse.model.QueryEngine;
+import com.arnasRad.vismawarehouse.model.TopItems;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+import com.arnasRad.vismawarehouse.utils.Metrics;
+import com.arnasRad.vismawarehouse.utils.PipelinedCsvLoader;
+import com.arnasRad.vismawarehouse.utils.Utilities;
+import com.arnasRad.vismawarehouse.utils.WarehouseLog;
+import com.arnasRad.vismawarehouse.utils.WarehouseServer;
+import com.arnasRad.vismawarehouse.utils.WarehouseWatcher;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-interactive command mode.
+ * Loads a .csv file once, evaluates every query given as an argument
+ * in a single pass over warehouse items (see QueryEngine) and writes
+ * results to standard output or to files. Used when the application
+ * is started with arguments:
+ *
+ * sample.csv --list --below 10 --output expired.txt --expired 2020-01-01
+ *
+ * Input can also be a directory or a glob pattern; all matching .csv
+ * files are then loaded concurrently into one warehouse.
+ */
+public class CommandLine {
+
+    private static final String STANDARD_OUTPUT = "-";
+
+    /**
+     * Report section of a query given as an argument
+     */
+    private static final class Section {
+
+        private final String caption;
+        private final String output;
+        private final LinkedHashMap<Item, Long> result;
+        private final TopItems top;
+        private final int pageSize;
+        private final ItemAggregation totals;
+        private final long sortMemory;
+
+        Section(String caption, String output, LinkedHashMap<Item, Long> result) {
+            this(caption, output, result, null, 0, null, 0);
+        }
+
+        Section(String caption, String output, TopItems top, int pageSize) {
+            this(caption, output, null, top, pageSize, null, 0);
+        }
+
+        Section(String caption, String output, ItemAggregation totals) {
+            this(caption, output, null, null, 0, totals, 0);
+        }
+
+        /**
+         * Section listing all items of the input file with an external sort
+         */
+        Section(String caption, String output, long sortMemory) {
+            this(caption, output, null, null, 0, null, sortMemory);
+        }
+
+        private Section(String caption, String output, LinkedHashMap<Item, Long> result,
+                        TopItems top, int pageSize, ItemAggregation totals, long sortMemory) {
+            this.caption = caption;
+            this.output = output;
+            this.result = result;
+            this.top = top;
+            this.pageSize = pageSize;
+            this.totals = totals;
+            this.sortMemory = sortMemory;
+        }
+
+        boolean isExternal() {
+            return sortMemory > 0;
+        }
+
+        void write(String fileName, Writer writer) throws IOException, ParseException {
+            if (isExternal()) {
+                Utilities.writeItemFileSorted(fileName, sortMemory, caption, writer);
+            } else if (totals != null) {
+                Utilities.writeGroupAggregates(totals.getGroups(), caption, writer);
+            } else if (top != null && pageSize > 0) {
+                ItemPage page = ItemPage.of(top, pageSize);
+                Utilities.writeItemList(page.getItems(), caption, writer);
+                if (page.getNextCursor() != null) {
+                    writer.write("Next page: --after " + ItemPage.formatCursor(page.getNextCursor()));
+                    writer.write(System.lineSeparator());
+                    writer.flush();
+                }
+            } else if (top != null) {
+                Utilities.writeItemList(top.getItems(), caption, writer);
+            } else {
+                Utilities.writeItemMap(result, caption, writer);
+            }
+        }
+    }
+
+    /**
+     * Runs queries specified by command line arguments
+     *
+     * @param args input file name followed by query options
+     * @return process exit status: 0 on success, 1 if loading or writing
+     * failed and 2 if arguments are invalid
+     */
+    public static int run(String[] args) {
+
+        String fileName = null;
+        String output = STANDARD_OUTPUT;
+        Item cursor = null;
+        int port = -1;
+        int metricsPeriod = -1;
+        boolean pipeline = false;
+        boolean snapshot = false;
+        QueryEngine engine = new QueryEngine();
+        List<Section> sections = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--list":
+                        sections.add(new Section("Items in Warehouse", output,
+                                engine.addQuery(ItemFilter.all())));
+                        break;
+                    case "--sorted-list":
+                        long megabytes = Long.parseLong(getValue(args, ++i));
+                        if (megabytes <= 0 || megabytes > Long.MAX_VALUE >> 20) {
+                            throw new IllegalArgumentException("Sort memory is out of range: " + megabytes);
+                        }
+                        sections.add(new Section("Items in Warehouse", output, megabytes << 20));
+                        break;
+                    case "--below":
+                        long threshold = Long.parseLong(getValue(args, ++i));
+                        sections.add(new Section("Items with insufficient quantities", output,
+                                engine.addQuery(ItemFilter.quantityBelow(threshold))));
+                        break;
+                    case "--expired":
+                        int expiredDay = DateUtilities.parseEpochDay(getValue(args, ++i));
+                        sections.add(new Section("Items that are not expired by " +
+                                DateUtilities.formatEpochDay(expiredDay), output,
+                                engine.addQuery(ItemFilter.expiresBy(expiredDay))));
+                        break;
+                    case "--soon":
+                        int soonDay = DateUtilities.parseEpochDay(getValue(args, ++i));
+                        sections.add(new Section("Items that are not expired by " +
+                                DateUtilities.formatEpochDay(soonDay), output,
+                                engine.addQuery(ItemFilter.expiresAfter(soonDay))));
+                        break;
+                    case "--name":
+                        String name = getValue(args, ++i);
+                        sections.add(new Section("Items named " + name, output,
+                                engine.addQuery(ItemFilter.nameEquals(name))));
+                        break;
+                    case "--code":
+                        String code = getValue(args, ++i);
+                        sections.add(new Section("Items with code " + code, output,
+                                engine.addQuery(ItemFilter.codeEquals(code))));
+                        break;
+                    case "--totals":
+                        ItemAggregation totals = new ItemAggregation(getGrouping(getValue(args, ++i)));
+                        engine.addQuery(ItemFilter.all(), totals::add);
+                        sections.add(new Section("Item totals by " + args[i], output, totals));
+                        break;
+                    case "--first-expiring":
+                        int expiringCount = getCount(getValue(args, ++i));
+                        TopItems expiring = new TopItems(ItemOrder.EXPIRATION, expiringCount);
+                        engine.addQuery(ItemFilter.all(), expiring);
+                        sections.add(new Section(expiringCount + " items closest to expiration",
+                                output, expiring, 0));
+                        break;
+                    case "--lowest":
+                        int lowestCount = getCount(getValue(args, ++i));
+                        TopItems lowest = new TopItems(ItemOrder.QUANTITY, lowestCount);
+                        engine.addQuery(ItemFilter.all(), lowest);
+                        sections.add(new Section(lowestCount + " items with lowest quantities",
+                                output, lowest, 0));
+                        break;
+                    case "--after":
+                        cursor = ItemPage.parseCursor(getValue(args, ++i));
+                        break;
+                    case "--page":
+                        int pageSize = getCount(getValue(args, ++i));
+                        TopItems page = new TopItems(ItemOrder.ITEM, pageSize + 1);
+                        engine.addQuery(cursor == null ? ItemFilter.all() : ItemFilter.after(cursor), page);
+                        sections.add(new Section("Items in Warehouse" + (cursor == null ? "" :
+                                " after " + ItemPage.formatCursor(cursor)), output, page, pageSize));
+                        cursor = null;
+                        break;
+                    case "--serve":
+                        port = Integer.parseInt(getValue(args, ++i));
+                        if (port < 0 || port > 65535) {
+                            throw new IllegalArgumentException("Port is out of range: " + port);
+                        }
+                        break;
+                    case "--metrics":
+                        metricsPeriod = Integer.parseInt(getValue(args, ++i));
+                        if (metricsPeriod < 0) {
+                            throw new IllegalArgumentException("Metrics period must not be negative: " + metricsPeriod);
+                        }
+                        break;
+                    case "--pipeline":
+                        pipeline = true;
+                        break;
+                    case "--snapshot":
+                        snapshot = true;
+                        break;
+                    case "--output":
+                        output = getValue(args, ++i);
+                        break;
+                    case "--help":
+                        printUsage(System.out);
+                        return 0;
+                    default:
+                        if (args[i].startsWith("--") || fileName != null) {
+                            throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                        }
+                        fileName = args[i];
+                }
+            }
+
+            if (fileName == null) {
+                throw new IllegalArgumentException("Input file is not specified");
+            }
+            if (cursor != null) {
+                throw new IllegalArgumentException("--after must be followed by --page");
+            }
+            if (port >= 0 && Utilities.isFileSet(fileName)) {
+                throw new IllegalArgumentException("Only a single file can be served: " + fileName);
+            }
+            if (pipeline && (port >= 0 || Utilities.isFileSet(fileName))) {
+                throw new IllegalArgumentException("--pipeline loads a single file and cannot be served");
+            }
+            if (pipeline && Files.exists(WarehouseLog.getLogPath(fileName))) {
+                throw new IllegalArgumentException("--pipeline does not replay the log of the file: " +
+                        WarehouseLog.getLogPath(fileName));
+            }
+            // the external sort reads rows straight from the file, without the logged mutations
+            if (sections.stream().anyMatch(Section::isExternal) &&
+                    Files.exists(WarehouseLog.getLogPath(fileName))) {
+                throw new IllegalArgumentException("--sorted-list does not replay the log of the file: " +
+                        WarehouseLog.getLogPath(fileName));
+            }
+            if (snapshot && (pipeline || Utilities.isFileSet(fileName))) {
+                throw new IllegalArgumentException("--snapshot cannot be used with --pipeline or several files");
+            }
+        } catch (IllegalArgumentException | ParseException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            return 2;
+        }
+
+        Closeable reporter = null;
+        if (metricsPeriod >= 0) {
+            Metrics.setEnabled(true);
+            Metrics.registerMBeans();
+            if (metricsPeriod > 0) {
+                reporter = Metrics.startReporter(metricsPeriod, System.err);
+            }
+            // printed on exit rather than on return, so it is printed also
+            // when a served warehouse is stopped by a signal
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                    () -> System.err.print(Metrics.getReport()), "warehouse-metrics-report"));
+        }
+
+        try {
+            if (port >= 0) {
+                return serve(fileName, snapshot, port, engine, sections);
+            }
+
+            try {
+                // external listings read the file themselves; the warehouse is loaded only for other queries
+                if (!sections.stream().allMatch(Section::isExternal)) {
+                    Warehouse warehouse;
+                    if (pipeline) {
+                        PipelinedCsvLoader loader = new PipelinedCsvLoader();
+                        warehouse = loader.load(fileName);
+                        System.err.print(loader.getReport());
+                    } else if (Utilities.isFileSet(fileName)) {
+                        warehouse = Utilities.loadWarehouseItemsFiles(fileName);
+                    } else {
+                        warehouse = Utilities.loadWarehouse(fileName, snapshot).getWarehouse();
+                    }
+                    engine.run(warehouse);
+                }
+                writeResults(fileName, sections);
+            } catch (IOException | ParseException e) {
+                System.err.println(e.getMessage());
+                return 1;
+            }
+
+            return 0;
+        } finally {
+            if (reporter != null) {
+                try {
+                    reporter.close();
+                } catch (IOException e) {
+                    // reporter only stops its thread
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs queries, then serves the file over HTTP until the process is stopped.
+     * Served warehouse is reloaded whenever the file changes.
+     */
+    private static int serve(String fileName, boolean snapshot, int port,
+                             QueryEngine engine, List<Section> sections) {
+
+        WarehouseServer.enableNoDelay();
+        try (WarehouseWatcher watcher = new WarehouseWatcher(fileName, snapshot);
+             WarehouseServer server = new WarehouseServer(port, watcher::getWarehouse)) {
+
+            engine.run(watcher.getWarehouse());
+            writeResults(fileName, sections);
+
+            System.out.println("Serving " + fileName + " at http://localhost:" + server.getPort() + "/items");
+            Thread.currentThread().join();
+        } catch (IOException | ParseException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Writes query results in argument order.
+     * Results of queries sharing an output file are written one after another.
+     */
+    private static void writeResults(String fileName, List<Section> sections)
+            throws IOException, ParseException {
+
+        Map<String, Writer> writers = new HashMap<>();
+        try {
+            for (Section section : sections) {
+                Writer writer = writers.get(section.output);
+                if (writer == null) {
+                    writer = section.output.equals(STANDARD_OUTPUT)
+                            ? Utilities.getConsoleWriter()
+                            : new BufferedWriter(new FileWriter(section.output));
+                    writers.put(section.output, writer);
+                }
+                section.write(fileName, writer);
+            }
+        } finally {
+            for (Writer writer : writers.values()) {
+                writer.close();
+            }
+        }
+    }
+
+    private static ItemGrouping getGrouping(String value) {
+
+        switch (value) {
+            case "name":
+                return ItemGrouping.NAME;
+            case "code":
+                return ItemGrouping.CODE;
+            case "day":
+                return ItemGrouping.EXPIRATION_DAY;
+            case "week":
+                return ItemGrouping.EXPIRATION_WEEK;
+            case "month":
+                return ItemGrouping.EXPIRATION_MONTH;
+            default:
+                throw new IllegalArgumentException("Unknown grouping: " + value);
+        }
+    }
+
+    private static int getCount(String value) {
+
+        int count = Integer.parseInt(value);
+        if (count <= 0 || count == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Item count is out of range: " + value);
+        }
+        return count;
+    }
+
+    private static String getValue(String[] args, int index) {
+
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static void printUsage(PrintStream out) {
+
+        out.println("Usage: <file.csv | directory | glob> [options]");
+        out.println("  all .csv files of a directory or files matching a glob such as");
+        out.println("  'exports/site*.csv' are loaded concurrently and merged");
+        out.println("  --list               all items");
+        out.println("  --sorted-list <MB>   all items sorted within about MB megabytes of memory,");
+        out.println("                       spilling sorted runs to temporary files;");
+        out.println("                       refused if the file has a log (<file>.log)");
+        out.println("  --below <quantity>   items with quantity lower than specified");
+        out.println("  --expired <date>     items that expire by yyyy-MM-dd date");
+        out.println("  --soon <date>        items that expire after yyyy-MM-dd date");
+        out.println("  --name <name>        items with specified name");
+        out.println("  --code <code>        items with specified code");
+        out.println("  --first-expiring <n> n items that expire first");
+        out.println("  --lowest <n>         n items with lowest quantities");
+        out.println("  --page <size>        page of items in name, code and date order");
+        out.println("  --after <cursor>     start the next --page after name,code,yyyy-MM-dd");
+        out.println("  --totals <grouping>  quantity count, sum, minimum and maximum grouped by");
+        out.println("                       name, code or expiration day, week or month");
+        out.println("  --serve <port>       serve queries as JSON over HTTP after running other");
+        out.println("                       queries, reloading the file when it changes");
+        out.println("  --metrics <seconds>  record metrics, register JMX MBeans and print metrics");
+        out.println("                       to standard error every n seconds (0: only at exit)");
+        out.println("  --pipeline           load the file with separate read, parse and aggregate");
+        out.println("                       threads and print their throughput");
+        out.println("  --snapshot           load the file from <file>.snapshot if it is up to date,");
+        out.println("                       otherwise load the file and save the snapshot");
+        out.println("  --output <file>      write results of following queries to file");
+        out.println("                       ('-' is standard output, the default)");
+        out.println("  --help               this text");
+    }
+}
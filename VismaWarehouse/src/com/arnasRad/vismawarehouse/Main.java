@@ -1,15 +1,30 @@
 package com.arnasRad.vismawarehouse;
 
+import com.arnasRad.vismawarehouse.model.ItemAggregation;
+import com.arnasRad.vismawarehouse.model.ItemGrouping;
 import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.LoadedWarehouse;
 import com.arnasRad.vismawarehouse.utils.MenuUtilities;
+import com.arnasRad.vismawarehouse.utils.Metrics;
 import com.arnasRad.vismawarehouse.utils.Utilities;
+import com.arnasRad.vismawarehouse.utils.WarehouseLog;
+import com.arnasRad.vismawarehouse.utils.WarehouseWatcher;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.text.ParseException;
 
 public class Main {
     public static void main(String[] args) {
 
+        if (args.length > 0) {  // run queries without the menu
+            System.exit(CommandLine.run(args));
+        }
+
+        // metrics are disabled, but can be enabled and read with a JMX client such as JConsole
+        Metrics.registerMBeans();
+
         int option; // menu option
         while(true) {
             
@@ -21,7 +36,10 @@ public class Main {
                 case MenuUtilities.MainOptions.LOAD:
                     try {
                         String fileName = Utilities.getFileNameInput();
-                        Warehouse warehouse = Utilities.loadWarehouseItems(fileName);
+                        LoadedWarehouse loaded = Utilities.loadWarehouse(fileName, false);
+                        Warehouse warehouse = loaded.getWarehouse();
+                        // loaded warehouse includes adjustments and rows logged in previous sessions
+                        WarehouseLog log = WarehouseLog.open(fileName, loaded);
 
                         boolean breakLoop = false;
                         while(!breakLoop) {
@@ -32,23 +50,47 @@ public class Main {
 
                             switch (option) {
                                 case MenuUtilities.SubOptions.LIST:
-                                    warehouse.printItems();
-                                    break;
                                 case MenuUtilities.SubOptions.QUANTITIES:
-                                    System.out.println("\nShows items with lower quantities than specified by the user.");
-                                    System.out.print("Enter quantity: ");
-                                    long quantity = Utilities.getLongInput();
-                                    warehouse.printInsufficientQuantityItems(quantity);
-                                    break;
                                 case MenuUtilities.SubOptions.EXPIRES:
-
-                                    warehouse.printExpiredItems(Utilities.getDateInput());
-                                    break;
                                 case MenuUtilities.SubOptions.SOON_TO_EXPIRE:
-
-                                    warehouse.printSoonToExpireItems(Utilities.getDateInput());
+                                    printQueryResult(option, warehouse);
+                                    break;
+                                case MenuUtilities.SubOptions.NEW_ROWS:
+                                    try {
+                                        int itemCount = warehouse.getItemCount();
+                                        Utilities.applyWarehouseTail(log, fileName);
+                                        System.out.println("\nNew rows applied. Distinct items: " +
+                                                itemCount + " -> " + warehouse.getItemCount());
+                                    } catch (IOException | ParseException e) {
+                                        System.out.println(e.getMessage());
+                                    }
+                                    break;
+                                case MenuUtilities.SubOptions.DELTA:
+                                    System.out.println("\nApplies quantity adjustments from a delta file " +
+                                            "(negative quantities are subtracted).");
+                                    try {
+                                        int itemCount = warehouse.getItemCount();
+                                        Utilities.applyWarehouseDelta(log, Utilities.getFileNameInput());
+                                        System.out.println("\nDelta applied. Distinct items: " +
+                                                itemCount + " -> " + warehouse.getItemCount());
+                                    } catch (IOException | ParseException e) {
+                                        System.out.println(e.getMessage());
+                                    }
+                                    break;
+                                case MenuUtilities.SubOptions.CHECKPOINT:
+                                    try {
+                                        Path checkpoint = log.checkpoint();
+                                        System.out.println("\nCheckpoint saved to " +
+                                                checkpoint + ", log emptied.");
+                                    } catch (IOException e) {
+                                        System.out.println(e.getMessage());
+                                    }
+                                    break;
+                                case MenuUtilities.SubOptions.TOTALS:
+                                    printTotals(warehouse);
                                     break;
                                 case MenuUtilities.SubOptions.MAIN_MENU:
+                                    log.close();
                                     breakLoop = true;
                                     break;
                             }
@@ -58,6 +100,28 @@ public class Main {
                         System.out.println(e.getMessage());
                     }
 
+                    break;
+                case MenuUtilities.MainOptions.WATCH:     // keep loaded file up to date
+                    String fileName = Utilities.getFileNameInput();
+                    try (WarehouseWatcher watcher = new WarehouseWatcher(fileName)) {
+
+                        while(true) {
+                            MenuUtilities.printSubMenu(fileName, false);
+                            option = Utilities.getIntInputBounded(0,
+                                    MenuUtilities.menuOptionCount,
+                                    "Enter option");
+
+                            if (option == MenuUtilities.SubOptions.MAIN_MENU) {
+                                break;
+                            }
+                            // each query uses the most recently loaded warehouse
+                            printQueryResult(option, watcher.getWarehouse());
+                        }
+
+                    } catch (IOException | ParseException e) {
+                        System.out.println(e.getMessage());
+                    }
+
                     break;
                 case MenuUtilities.MainOptions.ABOUT:     // about warehouse system
                     printAbout();
@@ -70,6 +134,53 @@ public class Main {
         }
     }
 
+    /**
+     * Asks user for query parameters and prints query result
+     * @param option sub menu option of the query
+     * @param warehouse warehouse to query
+     */
+    private static void printQueryResult(int option, Warehouse warehouse) {
+
+        switch (option) {
+            case MenuUtilities.SubOptions.LIST:
+                warehouse.printItems();
+                break;
+            case MenuUtilities.SubOptions.QUANTITIES:
+                System.out.println("\nShows items with lower quantities than specified by the user.");
+                System.out.print("Enter quantity: ");
+                long quantity = Utilities.getLongInput();
+                warehouse.printInsufficientQuantityItems(quantity);
+                break;
+            case MenuUtilities.SubOptions.EXPIRES:
+
+                warehouse.printExpiredItems(Utilities.getDateInput());
+                break;
+            case MenuUtilities.SubOptions.SOON_TO_EXPIRE:
+
+                warehouse.printSoonToExpireItems(Utilities.getDateInput());
+                break;
+        }
+    }
+
+    /**
+     * Asks user for a grouping and prints item totals of the warehouse.
+     * Aggregation is kept by the warehouse and follows later updates,
+     * so totals requested again after new rows or a delta are not recomputed
+     * @param warehouse warehouse to aggregate
+     */
+    private static void printTotals(Warehouse warehouse) {
+
+        System.out.println("\nShows quantity count, sum, minimum and maximum of item groups.");
+        int grouping = Utilities.getIntInputBounded(1, ItemGrouping.values().length,
+                "Group by (1 - name, 2 - code, 3 - expiration day, 4 - week, 5 - month)");
+        ItemAggregation totals = warehouse.aggregate(ItemGrouping.values()[grouping - 1]);
+        try (Writer writer = Utilities.getConsoleWriter()) {
+            Utilities.writeGroupAggregates(totals.getGroups(), "Item totals", writer);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
     /**
      * Print About information in console, specifying the purpose of this application
      * and how to use it
@@ -93,7 +204,17 @@ public class Main {
                 "user is taken to sub menu page.");
         System.out.println("4) Choose a corresponding option to process data\n\t" +
                 " and see the results.");
-        System.out.println("5) Enter 0 from main menu to quit the program or\n\t" +
+        System.out.println("5) Enter 5 from sub menu to apply rows appended to the\n\t" +
+                "loaded file since it was loaded, or 6 to apply a delta file\n\t" +
+                "of quantity adjustments in the same format. Adjustments are\n\t" +
+                "logged to <file>.log and applied again on the next load;\n\t" +
+                "enter 7 to save them to a checkpoint snapshot\n\t" +
+                "(<file>.checkpoint-<checksum>) and empty the log.\n\t" +
+                "Enter 8 to see item totals, kept up to date as items change.");
+        System.out.println("6) Enter option 2 from main menu to load a file and\n\t" +
+                "keep it loaded: changes of the file are loaded in the\n\t" +
+                "background while queries use the previously loaded data.");
+        System.out.println("7) Enter 0 from main menu to quit the program or\n\t" +
                 "enter 0 from sub menu to return to main menu and load another file");
 
     }
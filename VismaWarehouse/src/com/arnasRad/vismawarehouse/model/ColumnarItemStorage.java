@@ -0,0 +1,388 @@
+package com.arnasRad.vismawarehouse.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Compact single-threaded item storage.
+ * Items are kept in primitive columns instead of one object per item:
+ * names and codes are dictionary-encoded to int ids, expiration dates are
+ * stored as epoch days and quantities as longs. Rows are located through an
+ * open addressing hash table of row numbers, so a stored item costs about
+ * 30 bytes regardless of how long its name and code are.
+ *
+ * Item objects are recreated when items are iterated, so iteration order
+ * is row order and removing an item moves the last row into its place.
+ *
+ * Storage restored from columns builds its hash table on the first lookup
+ * (or in prepareIndexes). Concurrent readers of a storage that is no longer
+ * modified, such as a served warehouse, may look items up at the same time;
+ * building is synchronized.
+ */
+public class ColumnarItemStorage implements ItemStorage {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY_SLOT = -1;
+
+    private final StringDictionary names = new StringDictionary();
+    private final StringDictionary codes = new StringDictionary();
+
+    // columns; row i describes a single item
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+    private int[] codeIds = new int[INITIAL_CAPACITY];
+    private int[] expirationDays = new int[INITIAL_CAPACITY];
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    private int rowCount;
+
+    // hash table of row numbers; EMPTY_SLOT marks a free slot; null until hashed
+    private int[] slots;
+
+    // set once the hash table is built; publishes it to concurrent readers
+    private volatile boolean hashed;
+
+    /**
+     * Default class constructor
+     * Creates an empty storage
+     */
+    public ColumnarItemStorage() {
+
+        slots = newSlots(INITIAL_CAPACITY * 2);
+        hashed = true;
+    }
+
+    /**
+     * Class constructor
+     * Creates storage over already filled columns, e.g. ones restored from
+     * a snapshot. Rows must describe distinct items. Column arrays are used
+     * as they are, and the hash table of rows is only built on the first
+     * lookup by item (or by prepareIndexes), so scanning queries can run
+     * right away.
+     * @param names item names; name id is its index in the list
+     * @param codes item codes; code id is its index in the list
+     * @param nameIds name id column
+     * @param codeIds code id column
+     * @param expirationDays expiration date column, in days since 1970-01-01
+     * @param quantities quantity column
+     * @param rowCount number of filled rows
+     */
+    public ColumnarItemStorage(List<String> names, List<String> codes,
+                               int[] nameIds, int[] codeIds, int[] expirationDays,
+                               long[] quantities, int rowCount) {
+
+        for (String name : names) {
+            this.names.add(name);
+        }
+        for (String code : codes) {
+            this.codes.add(code);
+        }
+
+        this.nameIds = nameIds;
+        this.codeIds = codeIds;
+        this.expirationDays = expirationDays;
+        this.quantities = quantities;
+        this.rowCount = rowCount;
+    }
+
+    @Override
+    public long addItem(Item item, long quantity) {
+
+        int nameId = names.getOrAdd(item.getName());
+        int codeId = codes.getOrAdd(item.getCode());
+        int expirationDay = item.getExpirationDay();
+
+        int slot = findSlot(nameId, codeId, expirationDay);
+        if (slots[slot] != EMPTY_SLOT) {
+            long oldQuantity = quantities[slots[slot]];
+            quantities[slots[slot]] = oldQuantity + quantity;
+            return oldQuantity;
+        }
+
+        if (rowCount == quantities.length) {
+            growColumns();
+        }
+
+        nameIds[rowCount] = nameId;
+        codeIds[rowCount] = codeId;
+        expirationDays[rowCount] = expirationDay;
+        quantities[rowCount] = quantity;
+        slots[slot] = rowCount++;
+
+        if (rowCount * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean removeItem(Item item) {
+
+        int slot = findSlot(item);
+        if (slot == EMPTY_SLOT || slots[slot] == EMPTY_SLOT) {
+            return false;
+        }
+
+        int row = slots[slot];
+        deleteSlot(slot);
+
+        // keep rows dense by moving the last row into the freed one
+        int lastRow = --rowCount;
+        if (row != lastRow) {
+            int lastSlot = findSlot(nameIds[lastRow], codeIds[lastRow], expirationDays[lastRow]);
+            nameIds[row] = nameIds[lastRow];
+            codeIds[row] = codeIds[lastRow];
+            expirationDays[row] = expirationDays[lastRow];
+            quantities[row] = quantities[lastRow];
+            slots[lastSlot] = row;
+        }
+        return true;
+    }
+
+    @Override
+    public long getQuantity(Item item) {
+
+        int slot = findSlot(item);
+        if (slot == EMPTY_SLOT || slots[slot] == EMPTY_SLOT) {
+            return 0;
+        }
+        return quantities[slots[slot]];
+    }
+
+    @Override
+    public int getItemCount() {
+
+        return rowCount;
+    }
+
+    @Override
+    public void forEachItem(ItemConsumer action) {
+
+        for (int row = 0; row < rowCount; row++) {
+            action.accept(getItem(row), quantities[row]);
+        }
+    }
+
+    @Override
+    public void prepareIndexes() {
+
+        if (!hashed) {
+            buildSlots();
+        }
+    }
+
+    /**
+     * Gets items which quantity is less than specified value.
+     * Scans quantity column only and creates Item objects for matching rows.
+     * @param quantity value compared to items' quantity
+     * @return LinkedHashMap of items that have insufficient quantities
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getInsufficientQuantityItems(long quantity) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (quantities[row] < quantity) {
+                result.put(getItem(row), quantities[row]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets items which expiration date is equal to or before due date.
+     * Scans expiration date column only and creates Item objects for matching rows.
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of expired items
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getExpiredItems(int dueDay) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (expirationDays[row] <= dueDay) {
+                result.put(getItem(row), quantities[row]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets items which expiration date is after due date.
+     * Scans expiration date column only and creates Item objects for matching rows.
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of items that are not expired
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getSoonToExpireItems(int dueDay) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (expirationDays[row] > dueDay) {
+                result.put(getItem(row), quantities[row]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates Item object described by a row
+     * @param row row number
+     * @return item stored at the row
+     */
+    private Item getItem(int row) {
+
+        return new Item(codes.get(codeIds[row]), names.get(nameIds[row]),
+                expirationDays[row]);
+    }
+
+    /**
+     * Finds hash table slot of an item without adding its name or code
+     * to dictionaries
+     * @param item item to look up
+     * @return slot index or EMPTY_SLOT if item name or code is unknown
+     */
+    private int findSlot(Item item) {
+
+        int nameId = names.getId(item.getName());
+        int codeId = codes.getId(item.getCode());
+        if (nameId == EMPTY_SLOT || codeId == EMPTY_SLOT) {
+            return EMPTY_SLOT;
+        }
+        return findSlot(nameId, codeId, item.getExpirationDay());
+    }
+
+    /**
+     * Finds slot that contains the row with specified values or
+     * the free slot where such row should be inserted
+     */
+    private int findSlot(int nameId, int codeId, int expirationDay) {
+
+        if (!hashed) {
+            buildSlots();
+        }
+
+        int mask = slots.length - 1;
+        int slot = hash(nameId, codeId, expirationDay) & mask;
+        while (slots[slot] != EMPTY_SLOT) {
+            int row = slots[slot];
+            if (nameIds[row] == nameId && codeIds[row] == codeId &&
+                    expirationDays[row] == expirationDay) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Builds hash table of all rows, unless it is built already
+     */
+    private void buildSlots() {
+
+        synchronized (this) {
+            if (hashed) {
+                return;
+            }
+            rehash(Math.max(Integer.highestOneBit(Math.max(rowCount, 1)) << 2,
+                    INITIAL_CAPACITY * 2));
+            hashed = true;
+        }
+    }
+
+    /**
+     * Frees a slot, shifting following slots of the same probe
+     * sequence back so lookups never stop at a false gap
+     */
+    private void deleteSlot(int slot) {
+
+        int mask = slots.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (slots[next] != EMPTY_SLOT) {
+            int row = slots[next];
+            int home = hash(nameIds[row], codeIds[row], expirationDays[row]) & mask;
+            // move entry back if its home slot is not between gap and next
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slots[gap] = row;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[gap] = EMPTY_SLOT;
+    }
+
+    private void growColumns() {
+
+        int capacity = Math.max(quantities.length + (quantities.length >> 1), INITIAL_CAPACITY);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        codeIds = Arrays.copyOf(codeIds, capacity);
+        expirationDays = Arrays.copyOf(expirationDays, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+    }
+
+    private void rehash(int capacity) {
+
+        slots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (int row = 0; row < rowCount; row++) {
+            int slot = hash(nameIds[row], codeIds[row], expirationDays[row]) & mask;
+            while (slots[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = row;
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY_SLOT);
+        return slots;
+    }
+
+    private static int hash(int nameId, int codeId, int expirationDay) {
+
+        int hash = (nameId * 31 + codeId) * 31 + expirationDay;
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Assigns dense int ids to distinct strings
+     */
+    private static final class StringDictionary {
+
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        int getOrAdd(String value) {
+
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        void add(String value) {
+
+            ids.put(value, values.size());
+            values.add(value);
+        }
+
+        int getId(String value) {
+
+            Integer id = ids.get(value);
+            return id == null ? EMPTY_SLOT : id;
+        }
+
+        String get(int id) {
+
+            return values.get(id);
+        }
+    }
+}
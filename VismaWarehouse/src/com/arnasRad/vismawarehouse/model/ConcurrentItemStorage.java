@@ -0,0 +1,78 @@
+package com.arnasRad.vismawarehouse.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe item storage.
+ * Quantity of every item is a LongAdder, so once an item is stored
+ * adding to it is a single lock-free operation that scales with the number
+ * of writing threads. Readers never block writers: iteration and queries
+ * see a weakly consistent view where each item's quantity is read at the
+ * moment that item is visited.
+ *
+ * An addition that races with removal of the same item is never lost:
+ * if the item's LongAdder was removed while quantity was being added to it,
+ * the addition is repeated on the item inserted again, so it takes effect
+ * after the removal. A reader may have seen the removed LongAdder with that
+ * quantity already, so views are consistent per item, not across items.
+ *
+ * Item total returned by addItem includes additions of other threads made
+ * at the same time, but for positive quantities it is 0 only for the call
+ * that inserted the item.
+ */
+public class ConcurrentItemStorage implements ItemStorage {
+
+    private final ConcurrentHashMap<Item, LongAdder> items = new ConcurrentHashMap<>();
+
+    @Override
+    public long addItem(Item item, long quantity) {
+
+        while (true) {
+            LongAdder total = items.get(item);
+            if (total == null) {
+                LongAdder inserted = new LongAdder();
+                inserted.add(quantity);
+                total = items.putIfAbsent(item, inserted);
+                if (total == null) {
+                    return 0;
+                }
+            }
+
+            total.add(quantity);
+            // removed concurrently: the addition went away with the removed
+            // total, so it is applied again after the removal
+            if (items.get(item) == total) {
+                return total.sum() - quantity;
+            }
+        }
+    }
+
+    @Override
+    public boolean removeItem(Item item) {
+
+        return items.remove(item) != null;
+    }
+
+    @Override
+    public long getQuantity(Item item) {
+
+        LongAdder total = items.get(item);
+        return total == null ? 0 : total.sum();
+    }
+
+    @Override
+    public int getItemCount() {
+
+        return items.size();
+    }
+
+    @Override
+    public void forEachItem(ItemConsumer action) {
+
+        for (Map.Entry<Item, LongAdder> entry : items.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue().sum());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.arnasRad.vismawarehouse.model;
+
+/**
+ * Aggregated quantities of items that belong to one group
+ */
+public class GroupAggregate {
+
+    private final Object key;
+    private final int count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    /**
+     * Constructor
+     * @param key group key
+     * @param count number of distinct items in the group
+     * @param sum total quantity of group items
+     * @param min smallest item quantity
+     * @param max largest item quantity
+     */
+    public GroupAggregate(Object key, int count, long sum, long min, long max) {
+        this.key = key;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Getter
+     * @return item name or code String, or LocalDate of the first day
+     * of the expiration period
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * Getter
+     * @return number of distinct items in the group
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter
+     * @return total quantity of group items
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Getter
+     * @return smallest item quantity in the group
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * Getter
+     * @return largest item quantity in the group
+     */
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "Group: " + key +
+                ", Count: " + count +
+                ", Sum: " + sum +
+                ", Min: " + min +
+                ", Max: " + max;
+    }
+}
@@ -1,27 +1,58 @@
 package com.arnasRad.vismawarehouse.model;
 
-import com.arnasRad.vismawarehouse.utils.Utilities;
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.Objects;
 
 public class Item implements Comparable<Item> {
 
-    private String code;
-    private String name;
-    private Date expirationDate;
+    /**
+     * Item order: firstly by name, then code and lastly by expiration date
+     */
+    public static final Comparator<Item> COMPARATOR = Comparator.comparing(Item::getName)
+            .thenComparing(Item::getCode)
+            .thenComparingInt(Item::getExpirationDay);
+
+    private final String code;
+    private final String name;
+    private final int expirationDay;  // days since 1970-01-01
+    private final int hash;           // items are immutable, so hash is computed once
 
     /**
      * Constructor
      * @param code item code
      * @param name item name
-     * @param expirationDate item expiration date
+     * @param expirationDay item expiration date as number of days since 1970-01-01
      */
-    public Item(String code, String name, Date expirationDate) {
+    public Item(String code, String name, int expirationDay) {
         this.code = code;
         this.name = name;
-        this.expirationDate = expirationDate;
+        this.expirationDay = expirationDay;
+        this.hash = (31 * code.hashCode() + name.hashCode()) * 31 + expirationDay;
+    }
+
+    /**
+     * Constructor
+     * @param code item code
+     * @param name item name
+     * @param expirationDate item expiration date
+     */
+    public Item(String code, String name, LocalDate expirationDate) {
+        this(code, name, (int) expirationDate.toEpochDay());
+    }
+
+    /**
+     * Constructor
+     * @param code item code
+     * @param name item name
+     * @param expirationDate item expiration date; its day in default time zone is used
+     */
+    public Item(String code, String name, Date expirationDate) {
+        this(code, name, expirationDate.toInstant()
+                .atZone(ZoneId.systemDefault()).toLocalDate());
     }
 
     /**
@@ -40,12 +71,20 @@ public class Item implements Comparable<Item> {
         return name;
     }
 
+    /**
+     * Getter
+     * @return item expiration date as number of days since 1970-01-01
+     */
+    public int getExpirationDay() {
+        return expirationDay;
+    }
+
     /**
      * Getter
      * @return item expiration date
      */
-    public Date getExpirationDate() {
-        return expirationDate;
+    public LocalDate getExpirationDate() {
+        return LocalDate.ofEpochDay(expirationDay);
     }
 
     /**
@@ -53,7 +92,7 @@ public class Item implements Comparable<Item> {
      * @return item expiration date string
      */
     public String getExpirationDateString() {
-        return Utilities.getDateString(expirationDate);
+        return DateUtilities.formatEpochDay(expirationDay);
     }
 
     /**
@@ -62,9 +101,19 @@ public class Item implements Comparable<Item> {
      */
     @Override
     public String toString() {
-        return "Name='" + name + '\'' +
-                ", Code='" + code + '\'' +
-                ", ExpirationDate=" + getExpirationDateString();
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends Item object string representation to a reusable builder
+     * @param sb builder to append to
+     * @return the same builder
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append("Name='").append(name).append('\'')
+                .append(", Code='").append(code).append('\'')
+                .append(", ExpirationDate=");
+        return DateUtilities.appendEpochDay(sb, expirationDay);
     }
 
     /**
@@ -84,11 +133,14 @@ public class Item implements Comparable<Item> {
         }
 
         Item item = (Item) obj;
+        if (hash != item.hash) {
+            return false;
+        }
 
         // items are considered equal only if their code, name and expiration dates are equal
         return this.code.equals(item.getCode()) &&
                 this.name.equals(item.getName()) &&
-                expirationDate.equals(item.getExpirationDate());
+                expirationDay == item.getExpirationDay();
     }
 
     /**
@@ -97,7 +149,7 @@ public class Item implements Comparable<Item> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(code, name, expirationDate);
+        return hash;
     }
 
     /**
@@ -108,9 +160,6 @@ public class Item implements Comparable<Item> {
     @Override
     public int compareTo(Item o) {
 
-        return Comparator.comparing(Item::getName)
-                .thenComparing(Item::getCode)
-                .thenComparing(Item::getExpirationDate)
-                .compare(this, o);
+        return COMPARATOR.compare(this, o);
     }
 }
@@ -0,0 +1,291 @@
+package com.arnasRad.vismawarehouse.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Count, sum, minimum and maximum of item quantities grouped by item name,
+ * code or expiration period.
+ * Aggregates are kept in primitive accumulators and updated incrementally
+ * as item quantities change, so reading them costs O(groups) regardless of
+ * how many items the warehouse holds. Minimum and maximum are backed by
+ * per-group counts of distinct quantities; they are only recomputed from
+ * those counts when the last item holding the current extreme changes.
+ *
+ * Instances are not thread-safe.
+ */
+public class ItemAggregation {
+
+    private final ItemGrouping grouping;
+    private final HashMap<Object, Group> groups = new HashMap<>();
+
+    /**
+     * Constructor
+     * Creates an empty aggregation; see Warehouse.aggregate for
+     * an aggregation that follows warehouse updates
+     * @param grouping item property to group quantities by
+     */
+    public ItemAggregation(ItemGrouping grouping) {
+        this.grouping = grouping;
+    }
+
+    /**
+     * Getter
+     * @return item property quantities are grouped by
+     */
+    public ItemGrouping getGrouping() {
+        return grouping;
+    }
+
+    /**
+     * Adds an item that is not aggregated yet.
+     * Can be used as a QueryEngine sink.
+     * @param item item to add
+     * @param quantity item quantity
+     */
+    public void add(Item item, long quantity) {
+
+        update(item, 0, quantity);
+    }
+
+    /**
+     * Updates aggregates after item quantity changed
+     * @param item changed item
+     * @param oldQuantity item quantity before the change; 0 if item was not stored
+     * @param newQuantity item quantity after the change; 0 if item was removed
+     */
+    public void update(Item item, long oldQuantity, long newQuantity) {
+
+        if (oldQuantity == newQuantity) {
+            return;
+        }
+
+        Object key = grouping.getKey(item);
+        Group group = groups.get(key);
+        if (group == null) {
+            if (newQuantity <= 0) {
+                return;
+            }
+            group = new Group();
+            groups.put(key, group);
+        }
+
+        if (oldQuantity > 0) {
+            group.remove(oldQuantity);
+        }
+        if (newQuantity > 0) {
+            group.add(newQuantity);
+        }
+        if (group.count == 0) {
+            groups.remove(key);
+        }
+    }
+
+    /**
+     * Getter
+     * @return number of groups
+     */
+    public int getGroupCount() {
+
+        return groups.size();
+    }
+
+    /**
+     * Gets aggregates of all groups ordered by group key
+     * @return list of group aggregates
+     */
+    public List<GroupAggregate> getGroups() {
+
+        Object[] keys = groups.keySet().toArray();
+        Arrays.sort(keys);
+
+        List<GroupAggregate> result = new ArrayList<>(keys.length);
+        for (Object key : keys) {
+            Group group = groups.get(key);
+            result.add(new GroupAggregate(grouping.toPublicKey(key), group.count,
+                    group.sum, group.getMin(), group.getMax()));
+        }
+        return result;
+    }
+
+    /**
+     * Gets aggregates of every group as a map
+     * @return map of group keys to their aggregates, in no particular order
+     */
+    public Map<Object, GroupAggregate> getGroupMap() {
+
+        HashMap<Object, GroupAggregate> result = new HashMap<>();
+        groups.forEach((key, group) -> {
+            Object publicKey = grouping.toPublicKey(key);
+            result.put(publicKey, new GroupAggregate(publicKey, group.count,
+                    group.sum, group.getMin(), group.getMax()));
+        });
+        return result;
+    }
+
+    /**
+     * Primitive accumulators of a single group
+     */
+    private static final class Group {
+
+        private int count;
+        private long sum;
+        private long min;
+        private long max;
+        private boolean minStale;
+        private boolean maxStale;
+        private final QuantityCounts quantities = new QuantityCounts();
+
+        void add(long quantity) {
+
+            if (count == 0) {
+                min = max = quantity;
+            } else {
+                if (!minStale && quantity < min) {
+                    min = quantity;
+                }
+                if (!maxStale && quantity > max) {
+                    max = quantity;
+                }
+            }
+            count++;
+            sum += quantity;
+            quantities.add(quantity, 1);
+        }
+
+        void remove(long quantity) {
+
+            count--;
+            sum -= quantity;
+            if (quantities.add(quantity, -1) == 0) {
+                minStale |= quantity == min;
+                maxStale |= quantity == max;
+            }
+        }
+
+        long getMin() {
+
+            if (minStale) {
+                min = quantities.getMin();
+                minStale = false;
+            }
+            return min;
+        }
+
+        long getMax() {
+
+            if (maxStale) {
+                max = quantities.getMax();
+                maxStale = false;
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Open addressing multiset of long values.
+     * Values whose count drops to zero keep their slot until the next resize.
+     */
+    private static final class QuantityCounts {
+
+        private static final int EMPTY = -1;
+
+        private long[] values = new long[8];
+        private int[] counts = newCounts(8);
+        private int used;
+
+        /**
+         * Changes count of a value
+         * @return new count of the value
+         */
+        int add(long value, int delta) {
+
+            int mask = values.length - 1;
+            int slot = hash(value) & mask;
+            while (counts[slot] != EMPTY && values[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+
+            if (counts[slot] == EMPTY) {
+                values[slot] = value;
+                counts[slot] = delta;
+                if (++used * 2 > values.length) {
+                    resize();
+                }
+                return delta;
+            }
+            return counts[slot] += delta;
+        }
+
+        long getMin() {
+
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < values.length; i++) {
+                if (counts[i] > 0 && values[i] < min) {
+                    min = values[i];
+                }
+            }
+            return min;
+        }
+
+        long getMax() {
+
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < values.length; i++) {
+                if (counts[i] > 0 && values[i] > max) {
+                    max = values[i];
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Rehashes values that are still counted, dropping zero counts
+         */
+        private void resize() {
+
+            long[] oldValues = values;
+            int[] oldCounts = counts;
+
+            int live = 0;
+            for (int count : oldCounts) {
+                if (count > 0) {
+                    live++;
+                }
+            }
+            int capacity = Math.max(8, Integer.highestOneBit(Math.max(live, 1)) << 2);
+
+            values = new long[capacity];
+            counts = newCounts(capacity);
+            used = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldCounts[i] > 0) {
+                    int slot = hash(oldValues[i]) & mask;
+                    while (counts[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    values[slot] = oldValues[i];
+                    counts[slot] = oldCounts[i];
+                    used++;
+                }
+            }
+        }
+
+        private static int[] newCounts(int capacity) {
+
+            int[] counts = new int[capacity];
+            Arrays.fill(counts, EMPTY);
+            return counts;
+        }
+
+        private static int hash(long value) {
+
+            long hash = value * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.arnasRad.vismawarehouse.model;
+
+/**
+ * Operation that accepts an item together with its quantity.
+ * Quantity is passed as a primitive, so iterating warehouse items
+ * does not box values.
+ */
+@FunctionalInterface
+public interface ItemConsumer {
+
+    /**
+     * Performs this operation on given item
+     * @param item warehouse item
+     * @param quantity item quantity
+     */
+    void accept(Item item, long quantity);
+}
@@ -0,0 +1,117 @@
+package com.arnasRad.vismawarehouse.model;
+
+/**
+ * Condition tested on an item together with its quantity.
+ * Quantity is passed as a primitive, so filtering warehouse items
+ * does not box values.
+ */
+@FunctionalInterface
+public interface ItemFilter {
+
+    /**
+     * Tests given item
+     * @param item warehouse item
+     * @param quantity item quantity
+     * @return true if item matches the condition
+     */
+    boolean test(Item item, long quantity);
+
+    /**
+     * Gets a filter that matches items matched by both this and other filter
+     * @param other filter tested when this one matches
+     * @return combined filter
+     */
+    default ItemFilter and(ItemFilter other) {
+
+        return (item, quantity) -> test(item, quantity) && other.test(item, quantity);
+    }
+
+    /**
+     * Gets a filter that matches items matched by this or other filter
+     * @param other filter tested when this one does not match
+     * @return combined filter
+     */
+    default ItemFilter or(ItemFilter other) {
+
+        return (item, quantity) -> test(item, quantity) || other.test(item, quantity);
+    }
+
+    /**
+     * Gets a filter that matches every item
+     * @return filter that always matches
+     */
+    static ItemFilter all() {
+
+        return (item, quantity) -> true;
+    }
+
+    /**
+     * Gets a filter of items which quantity is less than specified value
+     * @param quantity value compared to items' quantity
+     * @return insufficient quantity filter
+     */
+    static ItemFilter quantityBelow(long quantity) {
+
+        return (item, itemQuantity) -> itemQuantity < quantity;
+    }
+
+    /**
+     * Gets a filter of items which quantity is equal to or greater than specified value
+     * @param quantity value compared to items' quantity
+     * @return sufficient quantity filter
+     */
+    static ItemFilter quantityAtLeast(long quantity) {
+
+        return (item, itemQuantity) -> itemQuantity >= quantity;
+    }
+
+    /**
+     * Gets a filter of items which expiration date is equal to or before due date
+     * @param dueDay date in days since 1970-01-01
+     * @return expired items filter
+     */
+    static ItemFilter expiresBy(int dueDay) {
+
+        return (item, quantity) -> item.getExpirationDay() <= dueDay;
+    }
+
+    /**
+     * Gets a filter of items which expiration date is after due date
+     * @param dueDay date in days since 1970-01-01
+     * @return not expired items filter
+     */
+    static ItemFilter expiresAfter(int dueDay) {
+
+        return (item, quantity) -> item.getExpirationDay() > dueDay;
+    }
+
+    /**
+     * Gets a filter of items with specified name
+     * @param name item name
+     * @return name filter
+     */
+    static ItemFilter nameEquals(String name) {
+
+        return (item, quantity) -> item.getName().equals(name);
+    }
+
+    /**
+     * Gets a filter of items with specified code
+     * @param code item code
+     * @return code filter
+     */
+    static ItemFilter codeEquals(String code) {
+
+        return (item, quantity) -> item.getCode().equals(code);
+    }
+
+    /**
+     * Gets a filter of items that follow specified item in Item.compareTo order
+     * @param cursor item after which matching items start
+     * @return pagination filter
+     */
+    static ItemFilter after(Item cursor) {
+
+        return (item, quantity) -> item.compareTo(cursor) > 0;
+    }
+}
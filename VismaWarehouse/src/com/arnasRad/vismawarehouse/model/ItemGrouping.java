@@ -0,0 +1,49 @@
+package com.arnasRad.vismawarehouse.model;
+
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+
+import java.time.LocalDate;
+
+/**
+ * Item property aggregated quantities are grouped by
+ */
+public enum ItemGrouping {
+
+    NAME,
+    CODE,
+    EXPIRATION_DAY,
+    EXPIRATION_WEEK,     // weeks start on Monday
+    EXPIRATION_MONTH;
+
+    /**
+     * Gets group key of an item
+     * @param item item to get the key of
+     * @return item name or code, or epoch day of the first day of
+     * the expiration period as Integer
+     */
+    Object getKey(Item item) {
+
+        switch (this) {
+            case NAME:
+                return item.getName();
+            case CODE:
+                return item.getCode();
+            case EXPIRATION_DAY:
+                return item.getExpirationDay();
+            case EXPIRATION_WEEK:
+                return DateUtilities.getFirstDayOfWeek(item.getExpirationDay());
+            default:
+                return DateUtilities.getFirstDayOfMonth(item.getExpirationDay());
+        }
+    }
+
+    /**
+     * Converts group key to the form returned to callers
+     * @param key key returned by getKey
+     * @return name or code String, or LocalDate of the first day of the period
+     */
+    Object toPublicKey(Object key) {
+
+        return key instanceof Integer ? LocalDate.ofEpochDay((Integer) key) : key;
+    }
+}
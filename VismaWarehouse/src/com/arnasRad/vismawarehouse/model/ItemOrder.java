@@ -0,0 +1,43 @@
+package com.arnasRad.vismawarehouse.model;
+
+/**
+ * Orderings of warehouse items used by top-K queries.
+ * Items that are equal by the ordered property are ordered as by Item.compareTo,
+ * so every ordering is total and results are stable.
+ */
+public enum ItemOrder {
+
+    /**
+     * Firstly by name, then code and lastly by expiration date
+     */
+    ITEM,
+
+    /**
+     * Earliest expiration date first
+     */
+    EXPIRATION,
+
+    /**
+     * Lowest quantity first
+     */
+    QUANTITY;
+
+    /**
+     * Compares two items with their quantities
+     * @return negative number if the first item goes first, 0 if items are equal,
+     * positive number if the second item goes first
+     */
+    int compare(Item item1, long quantity1, Item item2, long quantity2) {
+
+        int result = 0;
+        switch (this) {
+            case EXPIRATION:
+                result = Integer.compare(item1.getExpirationDay(), item2.getExpirationDay());
+                break;
+            case QUANTITY:
+                result = Long.compare(quantity1, quantity2);
+                break;
+        }
+        return result != 0 ? result : item1.compareTo(item2);
+    }
+}
@@ -0,0 +1,98 @@
+package com.arnasRad.vismawarehouse.model;
+
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A page of warehouse items ordered as by Item.compareTo.
+ * The next page starts after the item returned by getNextCursor, so pages
+ * stay consistent while items are added or removed between requests.
+ */
+public class ItemPage {
+
+    private final LinkedHashMap<Item, Long> items;
+    private final Item nextCursor;
+
+    /**
+     * Constructor
+     * @param items page items and their quantities, in order
+     * @param nextCursor last item of the page if more items follow; null otherwise
+     */
+    public ItemPage(LinkedHashMap<Item, Long> items, Item nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Creates a page out of items that follow the cursor.
+     * One item more than page size is expected to be collected;
+     * it is not included in the page and only signals that more pages follow
+     * @param top first pageSize + 1 items after the cursor
+     * @param pageSize maximum number of items in the page
+     * @return page of at most pageSize items
+     */
+    public static ItemPage of(TopItems top, int pageSize) {
+
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+
+        LinkedHashMap<Item, Long> items = top.getItems();
+        if (items.size() <= pageSize) {
+            return new ItemPage(items, null);
+        }
+
+        Item last = null;
+        Iterator<Item> iterator = items.keySet().iterator();
+        for (int i = 0; i < pageSize; i++) {
+            last = iterator.next();
+        }
+        iterator.next();
+        iterator.remove();
+        return new ItemPage(items, last);
+    }
+
+    /**
+     * Parses a page cursor written as name,code,yyyy-MM-dd
+     * @param text cursor text
+     * @return cursor item
+     * @throws ParseException thrown if cursor date is not valid
+     */
+    public static Item parseCursor(String text) throws ParseException {
+
+        String[] fields = text.split(",", -1);
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Cursor must be written as name,code,yyyy-MM-dd: " + text);
+        }
+        return new Item(fields[1], fields[0], DateUtilities.parseEpochDay(fields[2]));
+    }
+
+    /**
+     * Formats a page cursor as name,code,yyyy-MM-dd
+     * @param cursor cursor item
+     * @return cursor text
+     */
+    public static String formatCursor(Item cursor) {
+
+        return cursor.getName() + ',' + cursor.getCode() + ',' + cursor.getExpirationDateString();
+    }
+
+    /**
+     * Getter
+     * @return page items and their quantities, in order
+     */
+    public LinkedHashMap<Item, Long> getItems() {
+        return items;
+    }
+
+    /**
+     * Getter
+     * @return cursor of the next page; null if this is the last page
+     */
+    public Item getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,147 @@
+package com.arnasRad.vismawarehouse.model;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Storage engine behind a Warehouse.
+ * Keeps distinct items together with their total quantities.
+ * Query methods have default implementations that scan all items;
+ * implementations may override them with faster ones.
+ */
+public interface ItemStorage {
+
+    /**
+     * Adds quantity to an item.
+     * If the item is not stored yet, it is inserted with given quantity.
+     * @param item item to add
+     * @param quantity quantity to add to item total
+     * @return item total before the addition; 0 if the item was inserted
+     */
+    long addItem(Item item, long quantity);
+
+    /**
+     * Removes an item from storage
+     * @param item item to remove
+     * @return true if the item was stored
+     */
+    boolean removeItem(Item item);
+
+    /**
+     * Gets total quantity of an item
+     * @param item item to look up
+     * @return item quantity; 0 if item is not stored
+     */
+    long getQuantity(Item item);
+
+    /**
+     * Getter
+     * @return number of distinct items in storage
+     */
+    int getItemCount();
+
+    /**
+     * Performs given action for every stored item
+     * @param action action to perform with each item and its quantity
+     */
+    void forEachItem(ItemConsumer action);
+
+    /**
+     * Builds indexes used by queries ahead of time, so that the first
+     * query does not build them. Storages that have no lazily built
+     * indexes do nothing.
+     */
+    default void prepareIndexes() {
+    }
+
+    /**
+     * Gets all stored items.
+     * Returned map is owned by the caller: it is not backed by the storage
+     * @return LinkedHashMap of all items and their quantities
+     */
+    default LinkedHashMap<Item, Long> getItems() {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        forEachItem(result::put);
+        return result;
+    }
+
+    /**
+     * Gets items which quantity is less than specified value
+     * @param quantity value compared to items' quantity
+     * @return LinkedHashMap of items that have insufficient quantities
+     */
+    default LinkedHashMap<Item, Long> getInsufficientQuantityItems(long quantity) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        forEachItem((item, itemQuantity) -> {
+            if (itemQuantity < quantity) {
+                result.put(item, itemQuantity);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Counts items which quantity is less than specified value
+     * @param quantity value compared to items' quantity
+     * @return number of items that have insufficient quantities
+     */
+    default int countInsufficientQuantityItems(long quantity) {
+
+        int[] count = new int[1];
+        forEachItem((item, itemQuantity) -> {
+            if (itemQuantity < quantity) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Sums quantities of items which quantity is less than specified value
+     * @param quantity value compared to items' quantity
+     * @return total quantity of items that have insufficient quantities
+     */
+    default long sumInsufficientQuantities(long quantity) {
+
+        long[] sum = new long[1];
+        forEachItem((item, itemQuantity) -> {
+            if (itemQuantity < quantity) {
+                sum[0] += itemQuantity;
+            }
+        });
+        return sum[0];
+    }
+
+    /**
+     * Gets items which expiration date is equal to or before due date
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of expired items
+     */
+    default LinkedHashMap<Item, Long> getExpiredItems(int dueDay) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        forEachItem((item, quantity) -> {
+            if (item.getExpirationDay() <= dueDay) {
+                result.put(item, quantity);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets items which expiration date is after due date
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of items that are not expired
+     */
+    default LinkedHashMap<Item, Long> getSoonToExpireItems(int dueDay) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        forEachItem((item, quantity) -> {
+            if (item.getExpirationDay() > dueDay) {
+                result.put(item, quantity);
+            }
+        });
+        return result;
+    }
+}
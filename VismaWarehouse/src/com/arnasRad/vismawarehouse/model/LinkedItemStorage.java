@@ -0,0 +1,250 @@
+package com.arnasRad.vismawarehouse.model;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Default single-threaded item storage.
+ * Keeps items in a LinkedHashMap, so items are iterated in insertion order.
+ * Items are also indexed by expiration date and by quantity, so expired,
+ * soon to expire and insufficient quantity items are found with a range scan
+ * instead of checking every item.
+ *
+ * Indexes are built by the first indexed query and are maintained by
+ * updates only after that, so loading items (and storages that are never
+ * queried this way) do not pay for them. Concurrent readers of a storage
+ * that is no longer modified, such as a served warehouse, may build the
+ * indexes at the same time; building is synchronized. prepareIndexes
+ * builds them up front, before such a storage is handed to readers.
+ */
+public class LinkedItemStorage implements ItemStorage {
+
+    // contains distinct items;
+    // sums their quantities if equal items are being inserted
+    private final LinkedHashMap<Item, Long> items = new LinkedHashMap<>();
+
+    // items grouped by expiration date, ordered by date; null until indexed
+    private TreeMap<Integer, LinkedHashSet<Item>> expirationIndex;
+
+    // items grouped by total quantity, ordered by quantity; null until indexed
+    private TreeMap<Long, LinkedHashSet<Item>> quantityIndex;
+
+    // set once both indexes are built; publishes them to concurrent readers
+    private volatile boolean indexed;
+
+    @Override
+    public long addItem(Item item, long quantity) {
+
+        Long oldValue = items.putIfAbsent(item, quantity);
+        if (oldValue == null) {
+            if (indexed) {
+                addToIndex(expirationIndex, item.getExpirationDay(), item);
+                addToIndex(quantityIndex, quantity, item);
+            }
+            return 0;
+        }
+
+        long newValue = oldValue + quantity;
+        items.put(item, newValue);
+        if (indexed) {
+            removeFromIndex(quantityIndex, oldValue, item);
+            addToIndex(quantityIndex, newValue, item);
+        }
+        return oldValue;
+    }
+
+    @Override
+    public boolean removeItem(Item item) {
+
+        Long quantity = items.remove(item);
+        if (quantity == null) {
+            return false;
+        }
+
+        if (indexed) {
+            removeFromIndex(expirationIndex, item.getExpirationDay(), item);
+            removeFromIndex(quantityIndex, quantity, item);
+        }
+        return true;
+    }
+
+    @Override
+    public long getQuantity(Item item) {
+
+        return items.getOrDefault(item, 0L);
+    }
+
+    @Override
+    public int getItemCount() {
+
+        return items.size();
+    }
+
+    @Override
+    public void forEachItem(ItemConsumer action) {
+
+        for (Map.Entry<Item, Long> entry : items.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Gets all stored items.
+     * Returns a copy of the backing map, so callers can neither modify
+     * the storage through it (bypassing the indexes) nor see later changes.
+     * @return LinkedHashMap of all items and their quantities
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getItems() {
+
+        return new LinkedHashMap<>(items);
+    }
+
+    /**
+     * Gets items which quantity is less than specified value.
+     * Only quantities below the value are visited in the quantity index.
+     * @param quantity value compared to items' quantity
+     * @return LinkedHashMap of items that have insufficient quantities,
+     * ordered by quantity
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getInsufficientQuantityItems(long quantity) {
+
+        buildIndexes();
+        return getIndexedItems(quantityIndex.headMap(quantity, false));
+    }
+
+    /**
+     * Counts items which quantity is less than specified value.
+     * Visits only distinct quantities below the value, items are not copied
+     * @param quantity value compared to items' quantity
+     * @return number of items that have insufficient quantities
+     */
+    @Override
+    public int countInsufficientQuantityItems(long quantity) {
+
+        buildIndexes();
+        int count = 0;
+        for (LinkedHashSet<Item> sameQuantityItems :
+                quantityIndex.headMap(quantity, false).values()) {
+            count += sameQuantityItems.size();
+        }
+        return count;
+    }
+
+    /**
+     * Sums quantities of items which quantity is less than specified value.
+     * Visits only distinct quantities below the value, items are not copied
+     * @param quantity value compared to items' quantity
+     * @return total quantity of items that have insufficient quantities
+     */
+    @Override
+    public long sumInsufficientQuantities(long quantity) {
+
+        buildIndexes();
+        long sum = 0;
+        for (Map.Entry<Long, LinkedHashSet<Item>> entry :
+                quantityIndex.headMap(quantity, false).entrySet()) {
+            sum += entry.getKey() * entry.getValue().size();
+        }
+        return sum;
+    }
+
+    /**
+     * Gets items which expiration date is equal to or before due date.
+     * Only dates up to due date are visited in the expiration index.
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of expired items
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getExpiredItems(int dueDay) {
+
+        buildIndexes();
+        return getIndexedItems(expirationIndex.headMap(dueDay, true));
+    }
+
+    /**
+     * Gets items which expiration date is after due date.
+     * Only dates after due date are visited in the expiration index.
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of items that are not expired
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getSoonToExpireItems(int dueDay) {
+
+        buildIndexes();
+        return getIndexedItems(expirationIndex.tailMap(dueDay, false));
+    }
+
+    @Override
+    public void prepareIndexes() {
+
+        buildIndexes();
+    }
+
+    /**
+     * Builds expiration and quantity indexes of all stored items, unless they are built already.
+     * Items of the same date or quantity are kept in insertion order
+     */
+    private void buildIndexes() {
+
+        if (indexed) {
+            return;
+        }
+
+        synchronized (this) {
+            if (indexed) {
+                return;
+            }
+            TreeMap<Integer, LinkedHashSet<Item>> expirations = new TreeMap<>();
+            TreeMap<Long, LinkedHashSet<Item>> quantities = new TreeMap<>();
+            for (Map.Entry<Item, Long> entry : items.entrySet()) {
+                addToIndex(expirations, entry.getKey().getExpirationDay(), entry.getKey());
+                addToIndex(quantities, entry.getValue(), entry.getKey());
+            }
+            expirationIndex = expirations;
+            quantityIndex = quantities;
+            indexed = true;
+        }
+    }
+
+    /**
+     * Collects items of index range together with their quantities
+     * @param range part of expiration or quantity index
+     * @return LinkedHashMap of items ordered by index key
+     */
+    private LinkedHashMap<Item, Long> getIndexedItems(SortedMap<?, LinkedHashSet<Item>> range) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        for (LinkedHashSet<Item> sameDateItems : range.values()) {
+            for (Item item : sameDateItems) {
+                result.put(item, items.get(item));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds item to index group specified by key
+     */
+    private static <K> void addToIndex(TreeMap<K, LinkedHashSet<Item>> index, K key, Item item) {
+
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(item);
+    }
+
+    /**
+     * Removes item from index group specified by key.
+     * Empty groups are removed from index
+     */
+    private static <K> void removeFromIndex(TreeMap<K, LinkedHashSet<Item>> index, K key, Item item) {
+
+        LinkedHashSet<Item> group = index.get(key);
+        group.remove(item);
+        if (group.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
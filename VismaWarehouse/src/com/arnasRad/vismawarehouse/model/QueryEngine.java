@@ -0,0 +1,76 @@
+package com.arnasRad.vismawarehouse.model;
+
+import com.arnasRad.vismawarehouse.utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Evaluates a batch of item filters in a single traversal of the warehouse.
+ * Each query has its own result sink, which receives matching items in
+ * warehouse iteration order. A report with several sections therefore costs
+ * one scan of warehouse items instead of one scan and one copy per section.
+ *
+ * Engine can be run several times, e.g. against different warehouses;
+ * sinks receive the results of every run.
+ */
+public class QueryEngine {
+
+    private final List<ItemFilter> filters = new ArrayList<>();
+    private final List<ItemConsumer> sinks = new ArrayList<>();
+
+    /**
+     * Adds a query to the batch
+     * @param filter condition of items that match the query
+     * @param sink action performed with every matching item
+     * @return this engine, so queries can be chained
+     */
+    public QueryEngine addQuery(ItemFilter filter, ItemConsumer sink) {
+
+        filters.add(filter);
+        sinks.add(sink);
+        return this;
+    }
+
+    /**
+     * Adds a query which matching items are collected into a map
+     * @param filter condition of items that match the query
+     * @return map filled with matching items and their quantities when the engine runs
+     */
+    public LinkedHashMap<Item, Long> addQuery(ItemFilter filter) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>();
+        addQuery(filter, result::put);
+        return result;
+    }
+
+    /**
+     * Getter
+     * @return number of queries in the batch
+     */
+    public int getQueryCount() {
+
+        return filters.size();
+    }
+
+    /**
+     * Evaluates all queries in one traversal of warehouse items
+     * @param warehouse warehouse to query
+     */
+    public void run(Warehouse warehouse) {
+
+        long start = Metrics.startTimer();
+        ItemFilter[] filters = this.filters.toArray(new ItemFilter[0]);
+        ItemConsumer[] sinks = this.sinks.toArray(new ItemConsumer[0]);
+
+        warehouse.forEachItem((item, quantity) -> {
+            for (int i = 0; i < filters.length; i++) {
+                if (filters[i].test(item, quantity)) {
+                    sinks[i].accept(item, quantity);
+                }
+            }
+        });
+        Metrics.QUERY_BATCH.recordSince(start);
+    }
+}
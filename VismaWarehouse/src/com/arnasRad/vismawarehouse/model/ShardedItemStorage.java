@@ -0,0 +1,298 @@
+package com.arnasRad.vismawarehouse.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Item storage partitioned by item code into independent shards.
+ * Every shard is a separate storage with its own indexes, so a write
+ * touches exactly one shard and shards can be written from different
+ * threads at the same time.
+ *
+ * Queries run on all shards in parallel in a fork-join pool. Each shard
+ * sorts its own result, and sorted shard results are combined with a k-way
+ * merge, so items returned by queries are ordered firstly by name, then
+ * code and lastly by expiration date, like in item reports.
+ *
+ * Every shard is guarded by its own lock: a query sees each shard in a
+ * consistent state, but shards are not read at the same instant.
+ */
+public class ShardedItemStorage implements ItemStorage {
+
+    private final ItemStorage[] shards;
+    private final ForkJoinPool pool;
+
+    /**
+     * Sorted query result of a single shard, consumed by the k-way merge
+     */
+    private static final class Run {
+
+        private final Item[] items;
+        private final long[] quantities;
+        private int position;
+
+        Run(Map<Item, Long> result) {
+
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Map.Entry<Item, Long>[] entries = result.entrySet().toArray(new Map.Entry[0]);
+            Arrays.sort(entries, Map.Entry.comparingByKey());
+            items = new Item[entries.length];
+            quantities = new long[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                items[i] = entries[i].getKey();
+                quantities[i] = entries[i].getValue();
+            }
+        }
+
+        Item current() {
+            return items[position];
+        }
+    }
+
+    /**
+     * Constructor
+     * Creates a storage of LinkedItemStorage shards queried in the common fork-join pool
+     * @param shardCount number of shards; usually number of available processors
+     */
+    public ShardedItemStorage(int shardCount) {
+
+        this(shardCount, LinkedItemStorage::new, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     * @param shardCount number of shards
+     * @param shardFactory creates storage of every shard
+     * @param pool pool that queries shards
+     */
+    public ShardedItemStorage(int shardCount, Supplier<ItemStorage> shardFactory, ForkJoinPool pool) {
+
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+
+        this.shards = new ItemStorage[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = shardFactory.get();
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Getter
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public long addItem(Item item, long quantity) {
+
+        ItemStorage shard = getShard(item);
+        synchronized (shard) {
+            return shard.addItem(item, quantity);
+        }
+    }
+
+    @Override
+    public boolean removeItem(Item item) {
+
+        ItemStorage shard = getShard(item);
+        synchronized (shard) {
+            return shard.removeItem(item);
+        }
+    }
+
+    @Override
+    public long getQuantity(Item item) {
+
+        ItemStorage shard = getShard(item);
+        synchronized (shard) {
+            return shard.getQuantity(item);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+
+        int count = 0;
+        for (ItemStorage shard : shards) {
+            synchronized (shard) {
+                count += shard.getItemCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Performs given action for every stored item, shard after shard.
+     * Action is called while the lock of the visited shard is held
+     * @param action action to perform with each item and its quantity
+     */
+    @Override
+    public void forEachItem(ItemConsumer action) {
+
+        for (ItemStorage shard : shards) {
+            synchronized (shard) {
+                shard.forEachItem(action);
+            }
+        }
+    }
+
+    @Override
+    public void prepareIndexes() {
+
+        for (ItemStorage shard : shards) {
+            synchronized (shard) {
+                shard.prepareIndexes();
+            }
+        }
+    }
+
+    /**
+     * Gets all stored items
+     * @return LinkedHashMap of all items and their quantities, sorted by item
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getItems() {
+
+        return query(ItemStorage::getItems);
+    }
+
+    /**
+     * Gets items which quantity is less than specified value
+     * @param quantity value compared to items' quantity
+     * @return LinkedHashMap of items that have insufficient quantities, sorted by item
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getInsufficientQuantityItems(long quantity) {
+
+        return query(shard -> shard.getInsufficientQuantityItems(quantity));
+    }
+
+    @Override
+    public int countInsufficientQuantityItems(long quantity) {
+
+        return (int) sum(shard -> shard.countInsufficientQuantityItems(quantity));
+    }
+
+    @Override
+    public long sumInsufficientQuantities(long quantity) {
+
+        return sum(shard -> shard.sumInsufficientQuantities(quantity));
+    }
+
+    /**
+     * Gets items which expiration date is equal to or before due date
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of expired items, sorted by item
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getExpiredItems(int dueDay) {
+
+        return query(shard -> shard.getExpiredItems(dueDay));
+    }
+
+    /**
+     * Gets items which expiration date is after due date
+     * @param dueDay date value compared to items' expiration date, in days since 1970-01-01
+     * @return LinkedHashMap of items that are not expired, sorted by item
+     */
+    @Override
+    public LinkedHashMap<Item, Long> getSoonToExpireItems(int dueDay) {
+
+        return query(shard -> shard.getSoonToExpireItems(dueDay));
+    }
+
+    /**
+     * Items of the same code always belong to the same shard
+     */
+    private ItemStorage getShard(Item item) {
+
+        int hash = item.getCode().hashCode();
+        // spreads high bits, like HashMap does, so similar codes do not crowd one shard
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     * Runs a query on every shard in parallel and merges sorted shard results
+     * @param shardQuery query of a single shard
+     * @return LinkedHashMap of items of all shards, sorted by item
+     */
+    private LinkedHashMap<Item, Long> query(Function<ItemStorage, Map<Item, Long>> shardQuery) {
+
+        List<ForkJoinTask<Run>> tasks = new ArrayList<>(shards.length);
+        for (ItemStorage shard : shards) {
+            tasks.add(pool.submit(() -> {
+                // run is built under the lock: getItems of LinkedItemStorage returns the shard's own map
+                synchronized (shard) {
+                    return new Run(shardQuery.apply(shard));
+                }
+            }));
+        }
+
+        List<Run> runs = new ArrayList<>(shards.length);
+        int size = 0;
+        for (ForkJoinTask<Run> task : tasks) {
+            Run run = task.join();
+            runs.add(run);
+            size += run.items.length;
+        }
+        return merge(runs, size);
+    }
+
+    /**
+     * K-way merge of sorted runs; equal items never occur in different shards
+     */
+    private static LinkedHashMap<Item, Long> merge(List<Run> runs, int size) {
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+        PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                (run1, run2) -> run1.current().compareTo(run2.current()));
+        for (Run run : runs) {
+            if (run.items.length > 0) {
+                heads.add(run);
+            }
+        }
+
+        while (!heads.isEmpty()) {
+            Run run = heads.poll();
+            result.put(run.current(), run.quantities[run.position]);
+            if (++run.position < run.items.length) {
+                heads.add(run);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs a counting query on every shard in parallel and sums shard results
+     */
+    private long sum(ToLongFunction<ItemStorage> shardQuery) {
+
+        List<ForkJoinTask<Long>> tasks = new ArrayList<>(shards.length);
+        for (ItemStorage shard : shards) {
+            tasks.add(pool.submit(() -> {
+                synchronized (shard) {
+                    return shardQuery.applyAsLong(shard);
+                }
+            }));
+        }
+
+        long sum = 0;
+        for (ForkJoinTask<Long> task : tasks) {
+            sum += task.join();
+        }
+        return sum;
+    }
+}
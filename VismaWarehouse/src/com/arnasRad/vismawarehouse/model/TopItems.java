@@ -0,0 +1,154 @@
+package com.arnasRad.vismawarehouse.model;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Collects first items of specified order out of all items it is given.
+ * Items are kept in a bounded heap whose root is the last of the kept items,
+ * so collecting k first of n items takes O(n log k) time and O(k) memory
+ * instead of sorting all n items. Can be used as a QueryEngine sink.
+ *
+ * Instances are not thread-safe.
+ */
+public class TopItems implements ItemConsumer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ItemOrder order;
+    private final int limit;
+    private Item[] items;
+    private long[] quantities;
+    private int size;
+
+    /**
+     * Constructor
+     * @param order order items are ranked by
+     * @param limit maximum number of items to keep
+     */
+    public TopItems(ItemOrder order, int limit) {
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.order = order;
+        this.limit = limit;
+        int capacity = Math.min(limit, INITIAL_CAPACITY);
+        this.items = new Item[capacity];
+        this.quantities = new long[capacity];
+    }
+
+    /**
+     * Offers an item; it is kept if it goes before the last kept item
+     * or fewer than limit items are kept
+     * @param item offered item
+     * @param quantity item quantity
+     */
+    @Override
+    public void accept(Item item, long quantity) {
+
+        if (size < limit) {
+            if (size == items.length) {
+                grow();
+            }
+            items[size] = item;
+            quantities[size] = quantity;
+            siftUp(size++);
+        } else if (size > 0 && order.compare(item, quantity, items[0], quantities[0]) < 0) {
+            items[0] = item;
+            quantities[0] = quantity;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Getter
+     * @return number of kept items
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets kept items in order
+     * @return LinkedHashMap of kept items and their quantities, first item first
+     */
+    public LinkedHashMap<Item, Long> getItems() {
+
+        Item[] heapItems = items;
+        long[] heapQuantities = quantities;
+        items = heapItems.clone();
+        quantities = heapQuantities.clone();
+
+        // heap sort moves the last item to the end of the arrays on every step
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+
+        LinkedHashMap<Item, Long> result = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            result.put(items[i], quantities[i]);
+        }
+
+        items = heapItems;
+        quantities = heapQuantities;
+        return result;
+    }
+
+    private void siftUp(int index) {
+
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(index, parent) <= 0) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int end) {
+
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && compare(child + 1, child) > 0) {
+                child++;
+            }
+            if (compare(index, child) >= 0) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private int compare(int index1, int index2) {
+
+        return order.compare(items[index1], quantities[index1], items[index2], quantities[index2]);
+    }
+
+    private void swap(int index1, int index2) {
+
+        Item item = items[index1];
+        items[index1] = items[index2];
+        items[index2] = item;
+
+        long quantity = quantities[index1];
+        quantities[index1] = quantities[index2];
+        quantities[index2] = quantity;
+    }
+
+    private void grow() {
+
+        int capacity = (int) Math.min((long) items.length * 2, limit);
+        Item[] newItems = new Item[capacity];
+        long[] newQuantities = new long[capacity];
+        System.arraycopy(items, 0, newItems, 0, size);
+        System.arraycopy(quantities, 0, newQuantities, 0, size);
+        items = newItems;
+        quantities = newQuantities;
+    }
+}
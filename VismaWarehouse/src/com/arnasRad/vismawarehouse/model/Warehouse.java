@@ -1,11 +1,18 @@
 package com.arnasRad.vismawarehouse.model;
 
+import com.arnasRad.vismawarehouse.utils.Metrics;
+import com.arnasRad.vismawarehouse.utils.ResultCache;
 import com.arnasRad.vismawarehouse.utils.Utilities;
 
-import java.util.Date;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Warehouse class
@@ -16,15 +23,66 @@ public class Warehouse {
 
     // contains distinct items;
     // sums their quantities if equal items are being inserted
-    private LinkedHashMap<Item, Long> items;
+    private final ItemStorage items;
+
+    // aggregations updated on every change of item quantities
+    private final List<ItemAggregation> aggregations = new ArrayList<>();
+
+    // formatted reports; null unless enabled with enableReportCache
+    private volatile ResultCache reportCache;
 
     /**
      * Default class constructor
-     * Creates a new empty LinkedHashMap instance
+     * Creates a warehouse backed by a new empty LinkedHashMap
      */
     public Warehouse() {
 
-        items = new LinkedHashMap<>();
+        this(new LinkedItemStorage());
+    }
+
+    /**
+     * Class constructor
+     * Creates a warehouse backed by specified storage engine
+     * @param items storage that keeps warehouse items
+     */
+    public Warehouse(ItemStorage items) {
+
+        this.items = items;
+    }
+
+    /**
+     * Creates a new empty warehouse that can be updated and queried
+     * from several threads at the same time
+     * @return thread-safe Warehouse object
+     */
+    public static Warehouse createConcurrent() {
+
+        return new Warehouse(new ConcurrentItemStorage());
+    }
+
+    /**
+     * Creates a new empty warehouse that stores items in compact
+     * primitive columns. Uses several times less memory than the default
+     * storage when warehouse contains millions of items
+     * @return memory efficient Warehouse object
+     */
+    public static Warehouse createColumnar() {
+
+        return new Warehouse(new ColumnarItemStorage());
+    }
+
+    /**
+     * Creates a new empty warehouse partitioned by item code into shards
+     * that are queried in parallel, so queries use several processors.
+     * addItem and removeItem can be called from several threads at the same
+     * time, while adjustItem and aggregations need to be synchronized by the caller.
+     * Query results are sorted firstly by name, then code and lastly by expiration date
+     * @param shardCount number of shards; usually number of available processors
+     * @return sharded Warehouse object
+     */
+    public static Warehouse createSharded(int shardCount) {
+
+        return new Warehouse(new ShardedItemStorage(shardCount));
     }
 
     /**
@@ -36,14 +94,40 @@ public class Warehouse {
      */
     public void addItem(Item item, long quantity) {
 
-        if (items.containsKey(item)) {
-
-            long oldValue = items.get(item);
-            items.replace(item, oldValue + quantity);
-            return;
+        long oldQuantity = items.addItem(item, quantity);
+        if (!aggregations.isEmpty()) {
+            updateAggregations(item, oldQuantity, oldQuantity + quantity);
         }
+        Metrics.recordAdd(oldQuantity == 0);
+        invalidateReports();
+    }
+
+    /**
+     * Adds all items of another warehouse to this warehouse.
+     * Quantities of equal items are summed the same way as in addItem
+     * @param warehouse warehouse whose items are added
+     */
+    public void addItems(Warehouse warehouse) {
 
-        items.put(item, quantity);
+        warehouse.forEachItem(this::addItem);
+    }
+
+    /**
+     * Applies a quantity adjustment to an item.
+     * Unlike addItem, quantity can be negative; item is removed from
+     * the warehouse once its total quantity is no longer positive.
+     * Adjustment is not atomic, so concurrent adjustments of the same item
+     * have to be synchronized by the caller
+     * @param item item to adjust
+     * @param quantity quantity to add to (or, if negative, subtract from) item total
+     */
+    public void adjustItem(Item item, long quantity) {
+
+        if (items.getQuantity(item) + quantity > 0) {
+            addItem(item, quantity);
+        } else {
+            removeItem(item);
+        }
     }
 
     /**
@@ -52,7 +136,201 @@ public class Warehouse {
      */
     public void removeItem(Item item) {
 
-        items.remove(item);
+        long oldQuantity = aggregations.isEmpty() ? 0 : items.getQuantity(item);
+        if (!items.removeItem(item)) {
+            return;
+        }
+        if (!aggregations.isEmpty()) {
+            updateAggregations(item, oldQuantity, 0);
+        }
+        Metrics.recordRemove();
+        invalidateReports();
+    }
+
+    /**
+     * Gets quantity aggregates grouped by specified item property.
+     * Aggregation is computed with one scan of the items when it is requested
+     * for the first time and is then updated by addItem, adjustItem and
+     * removeItem, so reading it again costs O(groups).
+     * Aggregations are updated without synchronization, so warehouses that are
+     * updated from several threads must not be aggregated
+     * @param grouping item property to group by
+     * @return aggregation that follows warehouse updates
+     */
+    public ItemAggregation aggregate(ItemGrouping grouping) {
+
+        for (ItemAggregation aggregation : aggregations) {
+            if (aggregation.getGrouping() == grouping) {
+                return aggregation;
+            }
+        }
+
+        ItemAggregation aggregation = new ItemAggregation(grouping);
+        items.forEachItem(aggregation::add);
+        aggregations.add(aggregation);
+        return aggregation;
+    }
+
+    /**
+     * Enables caching of reports written by writeItems, writeInsufficientQuantityItems,
+     * writeExpiredItems and writeSoonToExpireItems (and their print methods).
+     * Repeated reports are then written without filtering and formatting items again
+     * until addItem, adjustItem or removeItem modify the warehouse
+     * @param capacity maximum total length of cached reports in characters
+     * @return enabled cache, which provides hit and eviction statistics
+     */
+    public ResultCache enableReportCache(long capacity) {
+
+        ResultCache cache = new ResultCache(capacity);
+        reportCache = cache;
+        return cache;
+    }
+
+    /**
+     * Getter
+     * @return report cache; null if report caching is not enabled
+     */
+    public ResultCache getReportCache() {
+
+        return reportCache;
+    }
+
+    private void invalidateReports() {
+
+        ResultCache cache = reportCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Writes a report of specified items, taking it from the report cache when it is enabled
+     */
+    private void writeReport(String query, Object parameter, String caption,
+                             Supplier<LinkedHashMap<Item, Long>> items, Writer writer) throws IOException {
+
+        ResultCache cache = reportCache;
+        if (cache == null) {
+            Utilities.writeItemMap(items.get(), caption, writer);
+            return;
+        }
+
+        writer.write(cache.get(query, parameter, () -> {
+            StringWriter report = new StringWriter();
+            try {
+                Utilities.writeItemMap(items.get(), caption, report);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return report.toString();
+        }));
+        writer.flush();
+    }
+
+    private void updateAggregations(Item item, long oldQuantity, long newQuantity) {
+
+        for (ItemAggregation aggregation : aggregations) {
+            aggregation.update(item, oldQuantity, newQuantity);
+        }
+    }
+
+    /**
+     * Gets total quantity of an item
+     * @param item item to look up
+     * @return item quantity; 0 if item is not in the warehouse
+     */
+    public long getQuantity(Item item) {
+
+        return items.getQuantity(item);
+    }
+
+    /**
+     * Getter
+     * @return number of distinct items in the warehouse
+     */
+    public int getItemCount() {
+
+        return items.getItemCount();
+    }
+
+    /**
+     * Performs given action for every item in the warehouse
+     * @param action action to perform with each item and its quantity
+     */
+    public void forEachItem(ItemConsumer action) {
+
+        items.forEachItem(action);
+    }
+
+    /**
+     * Builds storage indexes used by queries ahead of time, e.g. before
+     * a loaded warehouse is handed to concurrent readers, so that the first
+     * query does not spend time building them
+     */
+    public void prepareIndexes() {
+
+        items.prepareIndexes();
+    }
+
+    /**
+     * Gets all items in the warehouse.
+     * Returned map is a copy: changing it does not change the warehouse
+     * @return LinkedHashMap of items and their quantities
+     */
+    public LinkedHashMap<Item, Long> getItems() {
+
+        long start = Metrics.startTimer();
+        LinkedHashMap<Item, Long> result = items.getItems();
+        Metrics.QUERY_LIST.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Gets first items of specified order out of items that match the filter.
+     * Items are ranked with a bounded heap, so the cost is O(n log limit)
+     * rather than sorting every matching item
+     * @param filter condition of ranked items
+     * @param order order items are ranked by
+     * @param limit maximum number of returned items
+     * @return LinkedHashMap of first items and their quantities, in order
+     */
+    public LinkedHashMap<Item, Long> getTopItems(ItemFilter filter, ItemOrder order, int limit) {
+
+        long start = Metrics.startTimer();
+        TopItems top = new TopItems(order, limit);
+        items.forEachItem((item, quantity) -> {
+            if (filter.test(item, quantity)) {
+                top.accept(item, quantity);
+            }
+        });
+        LinkedHashMap<Item, Long> result = top.getItems();
+        Metrics.QUERY_TOP.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Gets a page of items ordered firstly by name, then code and lastly by expiration date
+     * @param cursor item after which the page starts; null for the first page
+     * @param pageSize maximum number of items in the page
+     * @return page of items with the cursor of the next page
+     */
+    public ItemPage getPage(Item cursor, int pageSize) {
+
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+
+        long start = Metrics.startTimer();
+        ItemFilter filter = cursor == null ? ItemFilter.all() : ItemFilter.after(cursor);
+        TopItems top = new TopItems(ItemOrder.ITEM, pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1);
+        items.forEachItem((item, quantity) -> {
+            if (filter.test(item, quantity)) {
+                top.accept(item, quantity);
+            }
+        });
+        ItemPage page = ItemPage.of(top, pageSize);
+        Metrics.QUERY_PAGE.recordSince(start);
+        return page;
     }
 
     /**
@@ -61,8 +339,22 @@ public class Warehouse {
      */
     public void printItems() {
 
-        System.out.println(Utilities.getItemMapString(
-                items, "Items in Warehouse"));
+        try (Writer writer = Utilities.getConsoleWriter()) {
+            writeItems(writer);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a sorted list of all items in the warehouse to specified writer.
+     * Entries are written as they are formatted, the report is not built in memory
+     * @param writer writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if writing fails
+     */
+    public void writeItems(Writer writer) throws IOException {
+
+        writeReport("list", null, "Items in Warehouse", this::getItems, writer);
     }
 
     /**
@@ -73,11 +365,32 @@ public class Warehouse {
      * @param quantity value compared to items' quantity
      * @return LinkedHashMap of items that has insufficient quantities
      */
-    private LinkedHashMap<Item, Long> getInsufficientQuantityItems(long quantity) {
-        return new LinkedHashMap<>(items.entrySet()
-                .stream()
-                .filter(x -> (x.getValue() < quantity))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    public LinkedHashMap<Item, Long> getInsufficientQuantityItems(long quantity) {
+
+        long start = Metrics.startTimer();
+        LinkedHashMap<Item, Long> result = items.getInsufficientQuantityItems(quantity);
+        Metrics.QUERY_INSUFFICIENT.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Counts items that have insufficient quantity without collecting them
+     * @param quantity value compared to items' quantity
+     * @return number of items which quantity is less than specified value
+     */
+    public int countInsufficientQuantityItems(long quantity) {
+
+        return items.countInsufficientQuantityItems(quantity);
+    }
+
+    /**
+     * Sums quantities of items that have insufficient quantity without collecting them
+     * @param quantity value compared to items' quantity
+     * @return total quantity of items which quantity is less than specified value
+     */
+    public long sumInsufficientQuantities(long quantity) {
+
+        return items.sumInsufficientQuantities(quantity);
     }
 
     /**
@@ -86,10 +399,24 @@ public class Warehouse {
      */
     public void printInsufficientQuantityItems(long quantity) {
 
-        System.out.println(
-                Utilities.getItemMapString(
-                        getInsufficientQuantityItems(quantity),
-                        "Items with insufficient quantities"));
+        try (Writer writer = Utilities.getConsoleWriter()) {
+            writeInsufficientQuantityItems(quantity, writer);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a sorted list of items with insufficient quantities to specified writer.
+     * Entries are written as they are formatted, the report is not built in memory
+     * @param quantity value that must be lower that items' quantity for it to be written
+     * @param writer writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if writing fails
+     */
+    public void writeInsufficientQuantityItems(long quantity, Writer writer) throws IOException {
+
+        writeReport("insufficient", quantity, "Items with insufficient quantities",
+                () -> getInsufficientQuantityItems(quantity), writer);
     }
 
     /**
@@ -98,13 +425,12 @@ public class Warehouse {
      * @param dueDate date value compared to items' expiration date
      * @return LinkedHashMap of items that are not expired
      */
-    private LinkedHashMap<Item, Long> getExpiredItems(Date dueDate) {
+    public LinkedHashMap<Item, Long> getExpiredItems(LocalDate dueDate) {
 
-        return new LinkedHashMap<>(items.entrySet()
-                .stream()
-                .filter(p -> (p.getKey().getExpirationDate().equals(dueDate) ||
-                        p.getKey().getExpirationDate().before(dueDate)))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        long start = Metrics.startTimer();
+        LinkedHashMap<Item, Long> result = items.getExpiredItems((int) dueDate.toEpochDay());
+        Metrics.QUERY_EXPIRED.recordSince(start);
+        return result;
     }
 
     /**
@@ -112,11 +438,26 @@ public class Warehouse {
      * Prints out a sorted list of items that are not expired
      * @param dueDate value compared to items' expiration date
      */
-    public void printExpiredItems(Date dueDate) {
+    public void printExpiredItems(LocalDate dueDate) {
+
+        try (Writer writer = Utilities.getConsoleWriter()) {
+            writeExpiredItems(dueDate, writer);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a sorted list of expired items to specified writer.
+     * Entries are written as they are formatted, the report is not built in memory
+     * @param dueDate value compared to items' expiration date
+     * @param writer writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if writing fails
+     */
+    public void writeExpiredItems(LocalDate dueDate, Writer writer) throws IOException {
 
-        System.out.println(Utilities
-                .getItemMapString(getExpiredItems(dueDate),
-                        "Items that are not expired by " + Utilities.getDateString(dueDate)));
+        writeReport("expired", dueDate, "Items that are not expired by " + Utilities.getDateString(dueDate),
+                () -> getExpiredItems(dueDate), writer);
     }
 
     /**
@@ -125,12 +466,12 @@ public class Warehouse {
      * @param dueDate date value compared to items' expiration date
      * @return LinkedHashMap of items that are not expired
      */
-    private LinkedHashMap<Item, Long> getSoonToExpireItems(Date dueDate) {
+    public LinkedHashMap<Item, Long> getSoonToExpireItems(LocalDate dueDate) {
 
-        return new LinkedHashMap<>(items.entrySet()
-                .stream()
-                .filter(p -> (p.getKey().getExpirationDate().after(dueDate)))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        long start = Metrics.startTimer();
+        LinkedHashMap<Item, Long> result = items.getSoonToExpireItems((int) dueDate.toEpochDay());
+        Metrics.QUERY_SOON_TO_EXPIRE.recordSince(start);
+        return result;
     }
 
     /**
@@ -138,10 +479,25 @@ public class Warehouse {
      * Prints out a sorted list of items that are not expired
      * @param dueDate value compared to items' expiration date
      */
-    public void printSoonToExpireItems(Date dueDate) {
+    public void printSoonToExpireItems(LocalDate dueDate) {
+
+        try (Writer writer = Utilities.getConsoleWriter()) {
+            writeSoonToExpireItems(dueDate, writer);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a sorted list of items that are not expired to specified writer.
+     * Entries are written as they are formatted, the report is not built in memory
+     * @param dueDate value compared to items' expiration date
+     * @param writer writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if writing fails
+     */
+    public void writeSoonToExpireItems(LocalDate dueDate, Writer writer) throws IOException {
 
-        System.out.println(Utilities
-                .getItemMapString(getSoonToExpireItems(dueDate),
-                        "Items that are not expired by " + Utilities.getDateString(dueDate)));
+        writeReport("soonToExpire", dueDate, "Items that are not expired by " + Utilities.getDateString(dueDate),
+                () -> getSoonToExpireItems(dueDate), writer);
     }
 }
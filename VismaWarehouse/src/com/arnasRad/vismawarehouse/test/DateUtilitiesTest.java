@@ -0,0 +1,100 @@
+package com.arnasRad.vismawarehouse.test;
+
+import com.arnasRad.vismawarehouse.utils.DateUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+public class DateUtilitiesTest {
+
+     @Test
+     public void FormatMatchesLocalDate() {
+
+          for (int epochDay = -719528; epochDay < 2932897; epochDay += 7) {
+
+               // Arrange
+               LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+               // Act
+               String result = DateUtilities.formatEpochDay(epochDay);
+
+               // Assert
+               Assert.assertEquals(date.toString(), result);
+          }
+     }
+
+     @Test
+     public void ParseMatchesLocalDate() throws ParseException {
+
+          for (int epochDay = -719528; epochDay < 2932897; epochDay += 13) {
+
+               // Arrange
+               LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+               // Act
+               int result = DateUtilities.parseEpochDay(date.toString());
+
+               // Assert
+               Assert.assertEquals(epochDay, result);
+          }
+     }
+
+     @Test
+     public void WeekAndMonthStartsMatchLocalDate() {
+
+          for (int epochDay = -719528; epochDay < 2932897; epochDay += 11) {
+
+               // Arrange
+               LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+               // Act
+               int weekStart = DateUtilities.getFirstDayOfWeek(epochDay);
+               int monthStart = DateUtilities.getFirstDayOfMonth(epochDay);
+
+               // Assert
+               Assert.assertEquals(date.with(DayOfWeek.MONDAY).toEpochDay(), weekStart);
+               Assert.assertEquals(date.withDayOfMonth(1).toEpochDay(), monthStart);
+          }
+     }
+
+     @Test
+     public void ParseRollsOverOutOfRangeValues() throws ParseException {
+
+          // Act
+          int result = DateUtilities.parseEpochDay("2019-13-32");
+
+          // Assert
+          Assert.assertEquals(LocalDate.of(2020, 2, 1).toEpochDay(), result);
+     }
+
+     @Test(expected = ParseException.class)
+     public void ParseRejectsInvalidDate() throws ParseException {
+
+          // Act
+          DateUtilities.parseEpochDay("2019-12");
+     }
+
+     @Test(expected = ParseException.class)
+     public void ParseRejectsDateOutOfRange() throws ParseException {
+
+          // Act
+          DateUtilities.parseEpochDay("5879610-09-10");
+     }
+
+     @Test
+     public void ParseAcceptsLargestFormattableDate() throws ParseException {
+
+          // Arrange
+          int epochDay = DateUtilities.parseEpochDay("5879610-09-09");
+
+          // Act
+          String result = DateUtilities.formatEpochDay(epochDay);
+
+          // Assert
+          Assert.assertEquals("5879610-09-09", result);
+          Assert.assertEquals(LocalDate.of(5879610, 9, 9).toEpochDay(), epochDay);
+     }
+}
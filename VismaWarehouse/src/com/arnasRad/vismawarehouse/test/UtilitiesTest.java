@@ -0,0 +1,767 @@
+package com.arnasRad.vismawarehouse.test;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.FileVersion;
+import com.arnasRad.vismawarehouse.utils.LatencyHistogram;
+import com.arnasRad.vismawarehouse.utils.LoadedWarehouse;
+import com.arnasRad.vismawarehouse.utils.Metrics;
+import com.arnasRad.vismawarehouse.utils.PipelinedCsvLoader;
+import com.arnasRad.vismawarehouse.utils.ResultCache;
+import com.arnasRad.vismawarehouse.utils.Utilities;
+import com.arnasRad.vismawarehouse.utils.WarehouseLog;
+import com.arnasRad.vismawarehouse.utils.WarehouseServer;
+import com.arnasRad.vismawarehouse.utils.WarehouseSnapshot;
+import com.arnasRad.vismawarehouse.utils.WarehouseWatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.time.LocalDate;
+
+public class UtilitiesTest {
+
+     private static final String CSV_HEADER = "Item Name,Code,Quantity,Expiration Date\n";
+
+     @Test
+     public void MappedLoaderMatchesSequential() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n" +
+                  "Tomatoes,659879897646897456,150,2018-07-12\r\n" +
+                  "Oranges,124123,14,2019-12-04\n" +
+                  "Pear,498944,56,2019-04-04");
+
+          // Act
+          Warehouse expected = Utilities.loadWarehouseItems(file.getPath());
+          Warehouse result = Utilities.loadWarehouseItemsMapped(file.getPath());
+
+          // Assert
+          assertSameItems(expected, result);
+          Assert.assertEquals(17, result.getQuantity(new Item("124123", "Oranges",
+                  Utilities.getDate(2019, 12, 4))));
+     }
+
+     @Test
+     public void ParallelLoaderMatchesSequential() throws IOException, ParseException {
+
+          // Arrange
+          StringBuilder sb = new StringBuilder(CSV_HEADER);
+          for (int i = 0; i < 1000; i++) {
+               sb.append("Item").append(i % 7).append(',')
+                       .append(i % 13).append(',')
+                       .append(i + 1).append(",2019-0").append(i % 9 + 1).append("-15\n");
+          }
+          File file = createCsv(sb.toString());
+          Warehouse expected = Utilities.loadWarehouseItems(file.getPath());
+
+          for (int threadCount = 1; threadCount <= 8; threadCount++) {
+
+               // Act
+               Warehouse result = Utilities.loadWarehouseItemsParallel(file.getPath(), threadCount);
+
+               // Assert
+               assertSameItems(expected, result);
+          }
+     }
+
+     @Test
+     public void PipelinedLoaderMatchesSequential() throws IOException, ParseException {
+
+          // Arrange
+          StringBuilder sb = new StringBuilder(CSV_HEADER);
+          for (int i = 0; i < 1000; i++) {
+               sb.append("Item").append(i % 7).append(',')
+                       .append(i % 13).append(',')
+                       .append(i + 1).append(",2019-0").append(i % 9 + 1).append("-15\n");
+          }
+          // last row without a line break
+          sb.append("Last,1,5,2019-01-01");
+          File file = createCsv(sb.toString());
+          Warehouse expected = Utilities.loadWarehouseItems(file.getPath());
+
+          for (int parserCount = 1; parserCount <= 4; parserCount++) {
+
+               // Act
+               // small buffers split rows at every possible position
+               PipelinedCsvLoader loader = new PipelinedCsvLoader(parserCount, 64 + parserCount * 7);
+               Warehouse result = loader.load(file.getPath());
+
+               // Assert
+               assertSameItems(expected, result);
+               Assert.assertTrue(loader.getReport().startsWith("Pipelined load: 1001 rows"));
+          }
+     }
+
+     @Test
+     public void PipelinedLoaderReportsInvalidRows() throws IOException, ParseException {
+
+          // Arrange
+          File invalidDate = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n" +
+                  "Pear,498944,56,2019-04-aa\n");
+          File longRow = createCsv(CSV_HEADER +
+                  "Oranges with a name longer than the buffer,124123,3,2019-12-04\n");
+          PipelinedCsvLoader loader = new PipelinedCsvLoader(2, 32);
+
+          // Act
+          try {
+               loader.load(invalidDate.getPath());
+               Assert.fail("Invalid date was loaded");
+          } catch (ParseException e) {
+
+               // Assert
+               Assert.assertTrue(e.getMessage().contains("2019-04-aa"));
+          }
+          try {
+               loader.load(longRow.getPath());
+               Assert.fail("Row longer than buffer was loaded");
+          } catch (IOException e) {
+               Assert.assertTrue(e.getMessage().contains("longer than 32 bytes"));
+          }
+     }
+
+     @Test
+     public void MultiFileLoaderMatchesConcatenatedFile() throws IOException, ParseException {
+
+          // Arrange
+          Path directory = Files.createTempDirectory("warehouse-sites");
+          StringBuilder all = new StringBuilder(CSV_HEADER);
+          StringBuilder firstSites = new StringBuilder(CSV_HEADER);
+          for (int site = 0; site < 3; site++) {
+               StringBuilder sb = new StringBuilder(CSV_HEADER);
+               for (int i = 0; i < 500; i++) {
+                    String row = "Item" + i % 7 + "," + (i + site) % 13 + "," + (i + 1) +
+                            ",2019-0" + (i % 9 + 1) + "-15\n";
+                    sb.append(row);
+                    all.append(row);
+                    if (site < 2) {
+                         firstSites.append(row);
+                    }
+               }
+               Files.write(directory.resolve("site" + site + ".csv"), sb.toString().getBytes(StandardCharsets.UTF_8));
+          }
+          Files.write(directory.resolve("notes.txt"), "not a csv file".getBytes(StandardCharsets.UTF_8));
+          Files.write(directory.resolve("site[2].csv"), CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+          Warehouse expected = Utilities.loadWarehouseItems(createCsv(all.toString()).getPath());
+          Warehouse expectedGlob = Utilities.loadWarehouseItems(createCsv(firstSites.toString()).getPath());
+
+          try {
+               // Act
+               Warehouse fromDirectory = Utilities.loadWarehouseItemsFiles(directory.toString());
+               Warehouse fromGlob = Utilities.loadWarehouseItemsFiles(directory + File.separator + "site[01].csv");
+
+               // Assert
+               Assert.assertTrue(Utilities.isFileSet(directory.toString()));
+               Assert.assertFalse(Utilities.isFileSet(directory.resolve("site[2].csv").toString()));
+               Assert.assertEquals(2, Utilities.getCsvFiles(directory + File.separator + "site[01].csv").size());
+               assertSameItems(expected, fromDirectory);
+               assertSameItems(expectedGlob, fromGlob);
+          } finally {
+               for (int site = 0; site < 3; site++) {
+                    Files.delete(directory.resolve("site" + site + ".csv"));
+               }
+               Files.delete(directory.resolve("notes.txt"));
+               Files.delete(directory.resolve("site[2].csv"));
+               Files.delete(directory);
+          }
+     }
+
+     @Test
+     public void ExternalSortReportMatchesInMemoryReport() throws IOException, ParseException {
+
+          // Arrange
+          StringBuilder sb = new StringBuilder(CSV_HEADER);
+          for (int i = 0; i < 1000; i++) {
+               sb.append("Item").append(i % 7).append(',')
+                       .append(i % 13).append(',')
+                       .append(i + 1).append(",2019-0").append(i % 9 + 1).append("-15\n");
+          }
+          File file = createCsv(sb.toString());
+          StringWriter expected = new StringWriter();
+          Utilities.writeItemMap(Utilities.loadWarehouseItems(file.getPath()).getItems(), "Items", expected);
+          StringWriter inMemory = new StringWriter();
+          StringWriter spilled = new StringWriter();
+
+          // Act
+          Utilities.writeItemFileSorted(file.getPath(), 1 << 20, "Items", inMemory);
+          // every row is spilled to its own run, so runs are also merged in several passes
+          Utilities.writeItemFileSorted(file.getPath(), 1, "Items", spilled);
+
+          // Assert
+          Assert.assertEquals(expected.toString(), inMemory.toString());
+          Assert.assertEquals(expected.toString(), spilled.toString());
+     }
+
+     @Test(expected = IOException.class)
+     public void ParallelLoaderRejectsNonPositiveQuantity() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n" +
+                  "Pear,498944,0,2019-04-04\n");
+
+          // Act
+          Utilities.loadWarehouseItemsParallel(file.getPath(), 2);
+     }
+
+     @Test
+     public void SnapshotRestoresSavedItems() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n" +
+                  "Tomatoes,659879897646897456,150,2018-07-12\n" +
+                  "Oranges,124123,14,2019-12-04\n" +
+                  "Pear,498944,56,2019-04-04\n");
+          setSettled(file);
+          Warehouse expected = Utilities.loadWarehouseItems(file.getPath());
+          Path snapshot = WarehouseSnapshot.getSnapshotPath(file.getPath());
+          snapshot.toFile().deleteOnExit();
+          WarehouseSnapshot.save(expected, snapshot, FileVersion.read(file.toPath()));
+
+          // Act
+          Warehouse result = WarehouseSnapshot.load(snapshot, FileVersion.read(file.toPath()));
+          try (FileWriter writer = new FileWriter(file, true)) {
+               writer.write("Pear,498944,1,2019-04-04\n");
+          }
+          Warehouse stale = WarehouseSnapshot.load(snapshot, FileVersion.read(file.toPath()));
+
+          // Assert
+          assertSameItems(expected, result);
+          Assert.assertNull(stale);
+     }
+
+     @Test
+     public void SnapshotOfJustModifiedFileIsStale() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          Path snapshot = WarehouseSnapshot.getSnapshotPath(file.getPath());
+          snapshot.toFile().deleteOnExit();
+          FileVersion version = FileVersion.read(file.toPath());
+          WarehouseSnapshot.save(Utilities.loadWarehouseItems(file.getPath()), snapshot, version);
+
+          // Act
+          // same size and, within timestamp resolution, the same modification time
+          try (FileWriter writer = new FileWriter(file)) {
+               writer.write(CSV_HEADER + "Oranges,124123,4,2019-12-04\n");
+          }
+          Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(version.getLastModified()));
+          Warehouse result = WarehouseSnapshot.load(snapshot, FileVersion.read(file.toPath()));
+
+          // Assert
+          Assert.assertFalse(version.isSettled());
+          Assert.assertNull(result);
+     }
+
+     @Test
+     public void FailedSnapshotSaveDeletesTemporaryFile() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          // a non-empty directory cannot be replaced with the saved snapshot
+          Path snapshot = WarehouseSnapshot.getSnapshotPath(file.getPath());
+          Path blocker = Files.createFile(Files.createDirectory(snapshot).resolve("blocker"));
+          Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+
+          // Act
+          IOException failure = null;
+          try {
+               WarehouseSnapshot.save(Utilities.loadWarehouseItems(file.getPath()), snapshot,
+                       FileVersion.read(file.toPath()));
+          } catch (IOException e) {
+               failure = e;
+          } finally {
+               Files.delete(blocker);
+               Files.delete(snapshot);
+          }
+
+          // Assert
+          Assert.assertNotNull(failure);
+          Assert.assertFalse(Files.exists(temporary));
+     }
+
+     @Test
+     public void DeltaAppliesNegativeAdjustments() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n" +
+                  "Pear,498944,56,2019-04-04\n");
+          File delta = createCsv(CSV_HEADER +
+                  "Oranges,124123,-3,2019-12-04\n" +
+                  "Pear,498944,-6,2019-04-04\n" +
+                  "Apples,111,10,2019-05-05\n");
+          Warehouse warehouse = Utilities.loadWarehouseItems(file.getPath());
+
+          // Act
+          Utilities.applyWarehouseDelta(warehouse, delta.getPath());
+
+          // Assert
+          Assert.assertEquals(2, warehouse.getItemCount());
+          Assert.assertEquals(0, warehouse.getQuantity(new Item("124123", "Oranges",
+                  Utilities.getDate(2019, 12, 4))));
+          Assert.assertEquals(50, warehouse.getQuantity(new Item("498944", "Pear",
+                  Utilities.getDate(2019, 4, 4))));
+          Assert.assertEquals(10, warehouse.getQuantity(new Item("111", "Apples",
+                  Utilities.getDate(2019, 5, 5))));
+     }
+
+     @Test
+     public void TailAppliesOnlyCompleteNewRows() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          Warehouse warehouse = Utilities.loadWarehouseItems(file.getPath());
+          long offset = file.length();
+          try (FileWriter writer = new FileWriter(file, true)) {
+               writer.write("Oranges,124123,4,2019-12-04\nPear,498944,5");
+          }
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+          Item pear = new Item("498944", "Pear", Utilities.getDate(2019, 4, 4));
+
+          // Act
+          offset = Utilities.applyWarehouseTail(warehouse, file.getPath(), offset);
+          long pearBefore = warehouse.getQuantity(pear);
+          try (FileWriter writer = new FileWriter(file, true)) {
+               writer.write("6,2019-04-04\n");
+          }
+          offset = Utilities.applyWarehouseTail(warehouse, file.getPath(), offset);
+
+          // Assert
+          Assert.assertEquals(7, warehouse.getQuantity(oranges));
+          Assert.assertEquals(0, pearBefore);
+          Assert.assertEquals(56, warehouse.getQuantity(pear));
+          Assert.assertEquals(file.length(), offset);
+     }
+
+     @Test
+     public void LoadedSizeContinuesWithAppendedRows() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          setSettled(file);
+          WarehouseSnapshot.getSnapshotPath(file.getPath()).toFile().deleteOnExit();
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+          long size = file.length();
+
+          // Act
+          LoadedWarehouse loaded = Utilities.loadWarehouse(file.getPath(), true);
+          LoadedWarehouse restored = Utilities.loadWarehouse(file.getPath(), true);
+          try (FileWriter writer = new FileWriter(file, true)) {
+               writer.write("Oranges,124123,4,2019-12-04\n");
+          }
+          Utilities.applyWarehouseTail(restored.getWarehouse(), file.getPath(),
+                  restored.getSourceSize());
+
+          // Assert
+          Assert.assertEquals(size, loaded.getSourceSize());
+          Assert.assertEquals(size, restored.getSourceSize());
+          Assert.assertEquals(7, restored.getWarehouse().getQuantity(oranges));
+     }
+
+     @Test
+     public void LogReplaysMutationsAndDropsTornRecord() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          File logFile = deleteOnExit(WarehouseLog.getLogPath(file.getPath()));
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+          Item pear = new Item("498944", "Pear", Utilities.getDate(2019, 4, 4));
+          Item apples = new Item("111", "Apples", Utilities.getDate(2019, 5, 5));
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(),
+                  Utilities.loadWarehouse(file.getPath(), false))) {
+               log.addItem(pear, 56);
+               log.adjustItem(pear, -6);
+               log.addItem(apples, 1);
+               log.removeItem(apples);
+               log.sync();
+          }
+          try (FileOutputStream output = new FileOutputStream(logFile, true)) {
+               output.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+          }
+
+          // Act
+          LoadedWarehouse loaded = Utilities.loadWarehouse(file.getPath(), false);
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(), loaded)) {
+               log.addItem(oranges, 4);
+          }
+          Warehouse replayed = Utilities.loadWarehouse(file.getPath(), false).getWarehouse();
+
+          // Assert
+          Warehouse result = loaded.getWarehouse();
+          Assert.assertEquals(2, result.getItemCount());
+          Assert.assertEquals(7, result.getQuantity(oranges));
+          Assert.assertEquals(50, result.getQuantity(pear));
+          assertSameItems(result, replayed);
+     }
+
+     @Test
+     public void LogKeepsRowsAppendedToFile() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          deleteOnExit(WarehouseLog.getLogPath(file.getPath()));
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(),
+                  Utilities.loadWarehouse(file.getPath(), false))) {
+               log.adjustItem(oranges, -1);
+          }
+
+          // Act
+          try (FileWriter writer = new FileWriter(file, true)) {
+               writer.write("Oranges,124123,4,2019-12-04\n");
+          }
+          LoadedWarehouse result = Utilities.loadWarehouse(file.getPath(), false);
+
+          // Assert
+          Assert.assertEquals(6, result.getWarehouse().getQuantity(oranges));
+          Assert.assertEquals(file.length(), result.getSourceSize());
+     }
+
+     @Test
+     public void LogReplaysTailRowsInApplyOrder() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Milk,1,5,2019-12-04\n");
+          deleteOnExit(WarehouseLog.getLogPath(file.getPath()));
+          Item milk = new Item("1", "Milk", Utilities.getDate(2019, 12, 4));
+          Warehouse live;
+
+          // Act
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(),
+                  Utilities.loadWarehouse(file.getPath(), false))) {
+               live = log.getWarehouse();
+               try (FileWriter writer = new FileWriter(file, true)) {
+                    writer.write("Milk,1,10,2019-12-04\n");
+               }
+               Utilities.applyWarehouseTail(log, file.getPath());
+               Assert.assertEquals(15, live.getQuantity(milk));
+               log.adjustItem(milk, -12);
+          }
+          LoadedWarehouse result = Utilities.loadWarehouse(file.getPath(), false);
+
+          // Assert
+          Assert.assertEquals(3, live.getQuantity(milk));
+          Assert.assertEquals(3, result.getWarehouse().getQuantity(milk));
+          Assert.assertEquals(file.length(), result.getSourceSize());
+     }
+
+     @Test
+     public void LogRecordsRowsAppliedByLoad() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Milk,1,5,2019-12-04\n");
+          deleteOnExit(WarehouseLog.getLogPath(file.getPath()));
+          Item milk = new Item("1", "Milk", Utilities.getDate(2019, 12, 4));
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(),
+                  Utilities.loadWarehouse(file.getPath(), false))) {
+               log.adjustItem(milk, 1);
+          }
+          try (FileWriter writer = new FileWriter(file, true)) {
+               writer.write("Milk,1,10,2019-12-04\n");
+          }
+
+          // Act
+          LoadedWarehouse loaded = Utilities.loadWarehouse(file.getPath(), false);
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(), loaded)) {
+               log.adjustItem(milk, -14);
+          }
+          Warehouse result = Utilities.loadWarehouse(file.getPath(), false).getWarehouse();
+
+          // Assert
+          Assert.assertEquals(2, loaded.getWarehouse().getQuantity(milk));
+          Assert.assertEquals(2, result.getQuantity(milk));
+     }
+
+     @Test(expected = IOException.class)
+     public void LogRefusesRewrittenFile() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          deleteOnExit(WarehouseLog.getLogPath(file.getPath()));
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(),
+                  Utilities.loadWarehouse(file.getPath(), false))) {
+               log.adjustItem(oranges, -1);
+          }
+          try (FileWriter writer = new FileWriter(file)) {
+               writer.write(CSV_HEADER + "Oranges,124123,5,2019-12-04\n");
+          }
+
+          // Act
+          Utilities.loadWarehouse(file.getPath(), false);
+     }
+
+     @Test
+     public void CheckpointReplacesLogRecords() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          File logFile = deleteOnExit(WarehouseLog.getLogPath(file.getPath()));
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+          Item pear = new Item("498944", "Pear", Utilities.getDate(2019, 4, 4));
+          LoadedWarehouse loaded = Utilities.loadWarehouse(file.getPath(), false);
+          long emptyLogSize;
+          Path first;
+          Path second;
+
+          // Act
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(), loaded)) {
+               emptyLogSize = logFile.length();
+               log.addItem(pear, 56);
+               first = deleteOnExit(log.checkpoint()).toPath();
+               log.adjustItem(oranges, -1);
+               second = deleteOnExit(log.checkpoint()).toPath();
+               Assert.assertEquals(emptyLogSize, logFile.length());
+               log.adjustItem(pear, -6);
+          }
+          try (FileWriter writer = new FileWriter(file, true)) {
+               writer.write("Oranges,124123,4,2019-12-04\n");
+          }
+          Warehouse result = Utilities.loadWarehouse(file.getPath(), false).getWarehouse();
+
+          // Assert
+          Assert.assertFalse(Files.exists(first));
+          Assert.assertTrue(Files.exists(second));
+          Assert.assertEquals(6, result.getQuantity(oranges));
+          Assert.assertEquals(50, result.getQuantity(pear));
+          assertSameItems(result, Utilities.loadWarehouse(file.getPath(), true).getWarehouse());
+     }
+
+     @Test
+     public void CheckpointNotNamedByLogIsIgnored() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          deleteOnExit(WarehouseLog.getLogPath(file.getPath()));
+          Path orphan = deleteOnExit(WarehouseLog.getCheckpointPath(file.getPath(), 1)).toPath();
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(),
+                  Utilities.loadWarehouse(file.getPath(), false))) {
+               log.adjustItem(oranges, 2);
+          }
+          // process stopped after a checkpoint was saved, before the log was replaced
+          WarehouseSnapshot.save(new Warehouse(), orphan, FileVersion.read(file.toPath()));
+
+          // Act
+          LoadedWarehouse loaded = Utilities.loadWarehouse(file.getPath(), false);
+          try (WarehouseLog log = WarehouseLog.open(file.getPath(), loaded)) {
+               log.adjustItem(oranges, 1);
+          }
+          Warehouse reloaded = Utilities.loadWarehouse(file.getPath(), false).getWarehouse();
+
+          // Assert
+          Assert.assertFalse(Files.exists(orphan));
+          Assert.assertEquals(6, reloaded.getQuantity(oranges));
+     }
+
+     @Test
+     public void WatcherSwapsInReloadedWarehouse()
+             throws IOException, ParseException, InterruptedException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n");
+          Item oranges = new Item("124123", "Oranges", Utilities.getDate(2019, 12, 4));
+
+          try (WarehouseWatcher watcher = new WarehouseWatcher(file.getPath())) {
+               Warehouse loaded = watcher.getWarehouse();
+
+               // Act
+               try (FileWriter writer = new FileWriter(file, true)) {
+                    writer.write("Oranges,124123,4,2019-12-04\n");
+               }
+               for (int i = 0; i < 100 && watcher.getReloadCount() == 0; i++) {
+                    Thread.sleep(100);
+               }
+
+               // Assert
+               Assert.assertEquals(3, loaded.getQuantity(oranges));
+               Assert.assertEquals(7, watcher.getWarehouse().getQuantity(oranges));
+          }
+     }
+
+     @Test
+     public void ServerAnswersQueriesWithJson() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n" +
+                  "Pear,498944,56,2019-04-04\n" +
+                  "Apples,111,10,2019-05-05\n");
+          Warehouse warehouse = Utilities.loadWarehouseItems(file.getPath());
+
+          try (WarehouseServer server = new WarehouseServer(0, () -> warehouse, 2)) {
+               String url = "http://localhost:" + server.getPort();
+
+               // Act
+               String insufficient = get(url + "/items/insufficient?quantity=11");
+               String insufficientPage = get(url + "/items/insufficient?quantity=11&limit=1");
+               String lastInsufficientPage = get(url +
+                       "/items/insufficient?quantity=11&limit=1&after=Apples,111,2019-05-05");
+               String page = get(url + "/items?limit=1&after=Apples,111,2019-05-05");
+               String firstPage = get(url + "/items");
+               HttpURLConnection tooLarge = (HttpURLConnection) new URL(url + "/items?limit=" +
+                       (WarehouseServer.MAX_PAGE_SIZE + 1)).openConnection();
+               HttpURLConnection invalid = (HttpURLConnection) new URL(url + "/items/expired?date=tomorrow")
+                       .openConnection();
+
+               // Assert
+               Assert.assertEquals("{\"caption\":\"Items with insufficient quantities\",\"count\":2,\"items\":[" +
+                       "{\"name\":\"Apples\",\"code\":\"111\",\"expirationDate\":\"2019-05-05\",\"quantity\":10}," +
+                       "{\"name\":\"Oranges\",\"code\":\"124123\",\"expirationDate\":\"2019-12-04\",\"quantity\":3}]}",
+                       insufficient);
+               Assert.assertTrue(insufficientPage.contains("\"count\":1,\"next\":\"Apples,111,2019-05-05\""));
+               Assert.assertTrue(lastInsufficientPage.contains("\"count\":1,\"items\":[{\"name\":\"Oranges\""));
+               Assert.assertTrue(page.contains("\"next\":\"Oranges,124123,2019-12-04\""));
+               Assert.assertTrue(firstPage.contains("\"count\":3,"));
+               Assert.assertFalse(firstPage.contains("\"next\""));
+               Assert.assertEquals(400, invalid.getResponseCode());
+               Assert.assertEquals(400, tooLarge.getResponseCode());
+          }
+     }
+
+     @Test
+     public void ResultCacheEvictsLeastRecentlyUsedAndInvalidates() {
+
+          // Arrange
+          ResultCache cache = new ResultCache(10);
+          int[] computations = new int[1];
+
+          // Act
+          cache.get("a", 1, () -> { computations[0]++; return "aaaa"; });
+          cache.get("b", 1, () -> { computations[0]++; return "bbbb"; });
+          cache.get("a", 1, () -> { computations[0]++; return "aaaa"; });
+          cache.get("c", 1, () -> { computations[0]++; return "cccc"; });
+          String evicted = cache.get("b", 1, () -> { computations[0]++; return "BBBB"; });
+          cache.invalidate();
+          String stale = cache.get("b", 1, () -> { computations[0]++; return "bbbb"; });
+
+          // Assert
+          Assert.assertEquals("BBBB", evicted);
+          Assert.assertEquals("bbbb", stale);
+          Assert.assertEquals(5, computations[0]);
+          Assert.assertEquals(1, cache.getHitCount());
+          Assert.assertEquals(5, cache.getMissCount());
+          Assert.assertEquals(2, cache.getEvictionCount());
+          Assert.assertTrue(cache.getSize() <= 10);
+     }
+
+     @Test
+     public void LatencyHistogramPercentilesAreWithinBucketPrecision() {
+
+          // Arrange
+          LatencyHistogram histogram = new LatencyHistogram("test");
+
+          // Act
+          for (long nanos = 1; nanos <= 100_000; nanos++) {
+               histogram.record(nanos * 1000);
+          }
+
+          // Assert
+          Assert.assertEquals(100_000, histogram.getCount());
+          Assert.assertEquals(50_000, histogram.getP50Micros(), 50_000 * 0.04);
+          Assert.assertEquals(99_000, histogram.getP99Micros(), 99_000 * 0.04);
+          Assert.assertEquals(100_000, histogram.getMaxMicros(), 100_000 * 0.04);
+          Assert.assertTrue(histogram.getMaxMicros() >= 100_000);
+     }
+
+     @Test
+     public void MetricsCountMergedItemsOnlyWhileEnabled() throws IOException, ParseException {
+
+          // Arrange
+          File file = createCsv(CSV_HEADER +
+                  "Oranges,124123,3,2019-12-04\n" +
+                  "Pear,498944,56,2019-04-04\n" +
+                  "Oranges,124123,14,2019-12-04\n");
+          Metrics.reset();
+
+          try {
+               // Act
+               Utilities.loadWarehouseItemsMapped(file.getPath());
+               long disabledRows = Metrics.LOAD.getCount();
+               Metrics.setEnabled(true);
+               Warehouse warehouse = Utilities.loadWarehouseItemsMapped(file.getPath());
+               warehouse.getInsufficientQuantityItems(10);
+               warehouse.removeItem(new Item("498944", "Pear", LocalDate.of(2019, 4, 4)));
+               warehouse.removeItem(new Item("498944", "Pear", LocalDate.of(2019, 4, 5)));
+
+               // Assert
+               Assert.assertEquals(0, disabledRows);
+               Assert.assertEquals(1, Metrics.LOAD.getCount());
+               Assert.assertEquals(1, Metrics.QUERY_INSUFFICIENT.getCount());
+               Assert.assertTrue(Metrics.getReport().contains("parse: rows=3,"));
+               Assert.assertTrue(Metrics.getReport().contains("items: inserted=2, merged=1, removed=1"));
+          } finally {
+               Metrics.setEnabled(false);
+               Metrics.reset();
+          }
+     }
+
+     private static File createCsv(String content) throws IOException {
+
+          File file = File.createTempFile("warehouse", ".csv");
+          file.deleteOnExit();
+          try (FileWriter writer = new FileWriter(file)) {
+               writer.write(content);
+          }
+          return file;
+     }
+
+     /**
+      * Moves modification time of a file far enough into the past
+      * for its version to be settled
+      */
+     private static void setSettled(File file) throws IOException {
+
+          Files.setLastModifiedTime(file.toPath(),
+                  FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+     }
+
+     private static File deleteOnExit(Path path) {
+
+          File file = path.toFile();
+          file.deleteOnExit();
+          return file;
+     }
+
+     private static String get(String url) throws IOException {
+
+          try (InputStream input = new URL(url).openStream()) {
+               return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+          }
+     }
+
+     private static void assertSameItems(Warehouse expected, Warehouse actual) {
+
+          Assert.assertEquals(expected.getItemCount(), actual.getItemCount());
+          expected.forEachItem((item, quantity) ->
+                  Assert.assertEquals(item.toString(), (long) quantity, actual.getQuantity(item)));
+     }
+}
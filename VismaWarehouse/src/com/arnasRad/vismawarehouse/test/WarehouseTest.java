@@ -0,0 +1,518 @@
+package com.arnasRad.vismawarehouse.test;
+
+import com.arnasRad.vismawarehouse.model.ColumnarItemStorage;
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.ItemAggregation;
+import com.arnasRad.vismawarehouse.model.ItemFilter;
+import com.arnasRad.vismawarehouse.model.ItemGrouping;
+import com.arnasRad.vismawarehouse.model.ItemOrder;
+import com.arnasRad.vismawarehouse.model.ItemPage;
+import com.arnasRad.vismawarehouse.model.LinkedItemStorage;
+import com.arnasRad.vismawarehouse.model.QueryEngine;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.arnasRad.vismawarehouse.utils.Metrics;
+import com.arnasRad.vismawarehouse.utils.ResultCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public class WarehouseTest {
+
+     @Test
+     public void AddItemSumsDuplicates() {
+
+          // Arrange
+          Calendar calendar = new GregorianCalendar(1990, Calendar.JANUARY, 31);
+          Warehouse warehouse = new Warehouse();
+
+          // Act
+          warehouse.addItem(new Item("123", "testName", calendar.getTime()), 5);
+          warehouse.addItem(new Item("123", "testName", calendar.getTime()), 7);
+
+          // Assert
+          Assert.assertEquals(1, warehouse.getItemCount());
+          Assert.assertEquals(12, warehouse.getQuantity(
+                  new Item("123", "testName", calendar.getTime())));
+     }
+
+     @Test
+     public void GetItemsReturnsCopy() {
+
+          // Arrange
+          Warehouse warehouse = new Warehouse();
+          Item item = new Item("123", "testName", LocalDate.of(1990, 1, 31));
+          warehouse.addItem(item, 5);
+
+          // Act
+          LinkedHashMap<Item, Long> items = warehouse.getItems();
+          items.put(item, 100L);
+          items.put(new Item("124", "otherName", LocalDate.of(1990, 1, 31)), 1L);
+          warehouse.addItem(item, 1);
+
+          // Assert
+          Assert.assertEquals(1, warehouse.getItemCount());
+          Assert.assertEquals(6, warehouse.getQuantity(item));
+          Assert.assertEquals(1, warehouse.getInsufficientQuantityItems(7).size());
+          Assert.assertEquals(Long.valueOf(100), items.get(item));
+     }
+
+     @Test
+     public void ConcurrentAddItemSumsAllUpdates() throws InterruptedException {
+
+          // Arrange
+          Calendar calendar = new GregorianCalendar(1990, Calendar.JANUARY, 31);
+          Warehouse warehouse = Warehouse.createConcurrent();
+          Thread[] threads = new Thread[8];
+          for (int i = 0; i < threads.length; i++) {
+               threads[i] = new Thread(() -> {
+                    for (int j = 0; j < 10000; j++) {
+                         warehouse.addItem(new Item(String.valueOf(j % 10), "testName",
+                                 calendar.getTime()), 1);
+                    }
+               });
+          }
+
+          // Act
+          for (Thread thread : threads) {
+               thread.start();
+          }
+          for (Thread thread : threads) {
+               thread.join();
+          }
+
+          // Assert
+          Assert.assertEquals(10, warehouse.getItemCount());
+          warehouse.forEachItem((item, quantity) -> Assert.assertEquals(8000, quantity));
+     }
+
+     @Test
+     public void ShardedAddItemCountsEveryInsertOnce() throws InterruptedException {
+
+          // Arrange
+          Calendar calendar = new GregorianCalendar(1990, Calendar.JANUARY, 31);
+          Warehouse warehouse = Warehouse.createSharded(4);
+          Thread[] threads = new Thread[8];
+          for (int i = 0; i < threads.length; i++) {
+               threads[i] = new Thread(() -> {
+                    for (int j = 0; j < 10000; j++) {
+                         warehouse.addItem(new Item(String.valueOf(j % 100), "testName",
+                                 calendar.getTime()), 1);
+                    }
+               });
+          }
+          Metrics.reset();
+          Metrics.setEnabled(true);
+
+          try {
+               // Act
+               for (Thread thread : threads) {
+                    thread.start();
+               }
+               for (Thread thread : threads) {
+                    thread.join();
+               }
+
+               // Assert
+               Assert.assertEquals(100, warehouse.getItemCount());
+               Assert.assertTrue(Metrics.getReport().contains("items: inserted=100, merged=79900, removed=0"));
+          } finally {
+               Metrics.setEnabled(false);
+               Metrics.reset();
+          }
+     }
+
+     @Test
+     public void RestoredColumnarStorageAnswersConcurrentLookups() throws InterruptedException {
+
+          // Arrange
+          int rowCount = 20000;
+          List<String> names = new ArrayList<>();
+          List<String> codes = new ArrayList<>();
+          int[] nameIds = new int[rowCount];
+          int[] codeIds = new int[rowCount];
+          int[] days = new int[rowCount];
+          long[] quantities = new long[rowCount];
+          for (int i = 0; i < rowCount; i++) {
+               names.add("name" + i);
+               codes.add(String.valueOf(i));
+               nameIds[i] = i;
+               codeIds[i] = i;
+               days[i] = 18000 + i % 100;
+               quantities[i] = i + 1;
+          }
+          Warehouse warehouse = new Warehouse(new ColumnarItemStorage(names, codes,
+                  nameIds, codeIds, days, quantities, rowCount));
+          Thread[] threads = new Thread[8];
+          int[] mismatches = new int[threads.length];
+
+          // Act
+          for (int t = 0; t < threads.length; t++) {
+               int thread = t;
+               threads[t] = new Thread(() -> {
+                    for (int i = 0; i < rowCount; i++) {
+                         Item item = new Item(String.valueOf(i), "name" + i, LocalDate.ofEpochDay(18000 + i % 100));
+                         if (warehouse.getQuantity(item) != i + 1) {
+                              mismatches[thread]++;
+                         }
+                    }
+               });
+               threads[t].start();
+          }
+          for (Thread thread : threads) {
+               thread.join();
+          }
+
+          // Assert
+          Assert.assertEquals(0, IntStream.of(mismatches).sum());
+     }
+
+     @Test
+     public void ColumnarStorageMatchesDefault() {
+
+          // Arrange
+          Warehouse expected = new Warehouse();
+          Warehouse result = Warehouse.createColumnar();
+          Calendar calendar = new GregorianCalendar(2019, Calendar.JANUARY, 1);
+          for (int i = 0; i < 5000; i++) {
+               calendar.set(2019, Calendar.JANUARY, 1 + i % 40);
+               Item item = new Item(String.valueOf(i % 97), "name" + i % 11, calendar.getTime());
+               expected.addItem(item, i);
+               result.addItem(item, i);
+          }
+
+          // Act
+          for (int i = 0; i < 5000; i += 3) {
+               calendar.set(2019, Calendar.JANUARY, 1 + i % 40);
+               Item item = new Item(String.valueOf(i % 97), "name" + i % 11, calendar.getTime());
+               expected.removeItem(item);
+               result.removeItem(item);
+          }
+
+          // Assert
+          Assert.assertEquals(expected.getItemCount(), result.getItemCount());
+          expected.forEachItem((item, quantity) ->
+                  Assert.assertEquals(quantity, result.getQuantity(item)));
+     }
+
+     @Test
+     public void PreparedIndexesAnswerLikeScan() {
+
+          // Arrange
+          Warehouse expected = Warehouse.createConcurrent();
+          Warehouse result = new Warehouse();
+          LocalDate dueDate = LocalDate.of(2019, 1, 10);
+          for (int i = 0; i < 2000; i++) {
+               Item item = new Item(String.valueOf(i % 97), "name" + i % 11, LocalDate.of(2019, 1, 1 + i % 28));
+               expected.addItem(item, i % 50 + 1);
+               result.addItem(item, i % 50 + 1);
+          }
+
+          // Act
+          result.prepareIndexes();
+          expected.adjustItem(new Item("1", "name1", LocalDate.of(2019, 1, 2)), 100);
+          result.adjustItem(new Item("1", "name1", LocalDate.of(2019, 1, 2)), 100);
+
+          // Assert
+          Assert.assertEquals(getSortedEntries(expected.getInsufficientQuantityItems(60)),
+                  getSortedEntries(result.getInsufficientQuantityItems(60)));
+          Assert.assertEquals(getSortedEntries(expected.getExpiredItems(dueDate)),
+                  getSortedEntries(result.getExpiredItems(dueDate)));
+     }
+
+     @Test
+     public void IndexedQueriesFollowUpdatesAfterFirstQuery() {
+
+          // Arrange
+          Warehouse expected = Warehouse.createConcurrent();
+          Warehouse result = new Warehouse();
+          LocalDate dueDate = LocalDate.of(2019, 1, 10);
+          for (int i = 0; i < 2000; i++) {
+               Item item = new Item(String.valueOf(i % 97), "name" + i % 11, LocalDate.of(2019, 1, 1 + i % 28));
+               expected.addItem(item, i % 50 + 1);
+               result.addItem(item, i % 50 + 1);
+          }
+          result.getInsufficientQuantityItems(60);
+
+          // Act
+          for (int i = 2000; i < 4000; i++) {
+               Item item = new Item(String.valueOf(i % 101), "name" + i % 11, LocalDate.of(2019, 1, 1 + i % 28));
+               expected.addItem(item, i % 50 + 1);
+               result.addItem(item, i % 50 + 1);
+          }
+          for (int i = 0; i < 4000; i += 7) {
+               Item item = new Item(String.valueOf(i % 97), "name" + i % 11, LocalDate.of(2019, 1, 1 + i % 28));
+               expected.removeItem(item);
+               result.removeItem(item);
+          }
+
+          // Assert
+          Assert.assertEquals(getSortedEntries(expected.getInsufficientQuantityItems(60)),
+                  getSortedEntries(result.getInsufficientQuantityItems(60)));
+          Assert.assertEquals(getSortedEntries(expected.getExpiredItems(dueDate)),
+                  getSortedEntries(result.getExpiredItems(dueDate)));
+          Assert.assertEquals(getSortedEntries(expected.getSoonToExpireItems(dueDate)),
+                  getSortedEntries(result.getSoonToExpireItems(dueDate)));
+          Assert.assertEquals(expected.sumInsufficientQuantities(60), result.sumInsufficientQuantities(60));
+     }
+
+     @Test
+     public void ShardedStorageMatchesDefaultInItemOrder() {
+
+          // Arrange
+          Warehouse expected = new Warehouse();
+          Warehouse result = Warehouse.createSharded(4);
+          for (int i = 0; i < 5000; i++) {
+               Item item = new Item(String.valueOf(i % 97), "name" + i % 11, LocalDate.of(2019, 1, 1 + i % 28));
+               expected.addItem(item, i % 50 + 1);
+               result.addItem(item, i % 50 + 1);
+          }
+          for (int i = 0; i < 5000; i += 7) {
+               Item item = new Item(String.valueOf(i % 97), "name" + i % 11, LocalDate.of(2019, 1, 1 + i % 28));
+               expected.removeItem(item);
+               result.removeItem(item);
+          }
+          LocalDate dueDate = LocalDate.of(2019, 1, 10);
+
+          // Act
+          LinkedHashMap<Item, Long> items = result.getItems();
+          LinkedHashMap<Item, Long> insufficient = result.getInsufficientQuantityItems(60);
+          LinkedHashMap<Item, Long> expired = result.getExpiredItems(dueDate);
+          LinkedHashMap<Item, Long> soonToExpire = result.getSoonToExpireItems(dueDate);
+
+          // Assert
+          Assert.assertEquals(expected.getItemCount(), result.getItemCount());
+          Assert.assertEquals(getSortedEntries(expected.getItems()), new ArrayList<>(items.entrySet()));
+          Assert.assertEquals(getSortedEntries(expected.getInsufficientQuantityItems(60)),
+                  new ArrayList<>(insufficient.entrySet()));
+          Assert.assertEquals(getSortedEntries(expected.getExpiredItems(dueDate)), new ArrayList<>(expired.entrySet()));
+          Assert.assertEquals(getSortedEntries(expected.getSoonToExpireItems(dueDate)),
+                  new ArrayList<>(soonToExpire.entrySet()));
+          Assert.assertEquals(expected.countInsufficientQuantityItems(60), result.countInsufficientQuantityItems(60));
+          Assert.assertEquals(expected.sumInsufficientQuantities(60), result.sumInsufficientQuantities(60));
+     }
+
+     @Test
+     public void ExpirationIndexFollowsRemovals() {
+
+          // Arrange
+          LinkedItemStorage storage = new LinkedItemStorage();
+          for (int day = 1; day <= 10; day++) {
+               LocalDate date = LocalDate.of(2019, 1, day);
+               storage.addItem(new Item("1", "first", date), day);
+               storage.addItem(new Item("2", "second", date), day);
+          }
+          storage.removeItem(new Item("1", "first", LocalDate.of(2019, 1, 3)));
+          LocalDate dueDate = LocalDate.of(2019, 1, 5);
+
+          // Act
+          LinkedHashMap<Item, Long> expired = storage.getExpiredItems((int) dueDate.toEpochDay());
+          LinkedHashMap<Item, Long> notExpired = storage.getSoonToExpireItems((int) dueDate.toEpochDay());
+
+          // Assert
+          Assert.assertEquals(9, expired.size());
+          Assert.assertEquals(10, notExpired.size());
+          Assert.assertEquals(5, (long) expired.get(new Item("2", "second", dueDate)));
+     }
+
+     @Test
+     public void QuantityIndexFollowsUpdates() {
+
+          // Arrange
+          Warehouse warehouse = new Warehouse();
+          Calendar calendar = new GregorianCalendar(2019, Calendar.JANUARY, 1);
+          for (int i = 1; i <= 10; i++) {
+               warehouse.addItem(new Item(String.valueOf(i), "name", calendar.getTime()), i);
+          }
+          warehouse.addItem(new Item("1", "name", calendar.getTime()), 20);
+          warehouse.removeItem(new Item("2", "name", calendar.getTime()));
+
+          // Act
+          int count = warehouse.countInsufficientQuantityItems(6);
+          long sum = warehouse.sumInsufficientQuantities(6);
+
+          // Assert
+          Assert.assertEquals(3, count);
+          Assert.assertEquals(3 + 4 + 5, sum);
+     }
+
+     @Test
+     public void QueryEngineMatchesSeparateQueries() {
+
+          // Arrange
+          Warehouse warehouse = new Warehouse();
+          for (int i = 0; i < 500; i++) {
+               warehouse.addItem(new Item(String.valueOf(i % 13), "name" + i % 7,
+                       LocalDate.of(2019, 1, 1 + i % 30)), i % 17 + 1);
+          }
+          LocalDate dueDate = LocalDate.of(2019, 1, 15);
+          int dueDay = (int) dueDate.toEpochDay();
+          QueryEngine engine = new QueryEngine();
+          LinkedHashMap<Item, Long> insufficient = engine.addQuery(ItemFilter.quantityBelow(8));
+          LinkedHashMap<Item, Long> expired = engine.addQuery(ItemFilter.expiresBy(dueDay));
+          LinkedHashMap<Item, Long> notExpired = engine.addQuery(ItemFilter.expiresAfter(dueDay));
+          LinkedHashMap<Item, Long> named = engine.addQuery(ItemFilter.nameEquals("name3")
+                  .and(ItemFilter.codeEquals("4")));
+          long[] count = new long[1];
+          engine.addQuery(ItemFilter.all(), (item, quantity) -> count[0]++);
+
+          // Act
+          engine.run(warehouse);
+
+          // Assert
+          Assert.assertEquals(warehouse.getInsufficientQuantityItems(8), insufficient);
+          Assert.assertEquals(warehouse.getExpiredItems(dueDate), expired);
+          Assert.assertEquals(warehouse.getSoonToExpireItems(dueDate), notExpired);
+          Assert.assertEquals(warehouse.getItemCount(), count[0]);
+          named.forEach((item, quantity) -> {
+               Assert.assertEquals("name3", item.getName());
+               Assert.assertEquals("4", item.getCode());
+          });
+          Assert.assertFalse(named.isEmpty());
+     }
+
+     @Test
+     public void AggregationFollowsWarehouseUpdates() {
+
+          // Arrange
+          Warehouse warehouse = new Warehouse();
+          for (int i = 0; i < 200; i++) {
+               warehouse.addItem(new Item(String.valueOf(i % 11), "name" + i % 5,
+                       LocalDate.of(2019, 1 + i % 3, 1 + i % 28)), i % 9 + 1);
+          }
+          ItemAggregation byName = warehouse.aggregate(ItemGrouping.NAME);
+          ItemAggregation byMonth = warehouse.aggregate(ItemGrouping.EXPIRATION_MONTH);
+
+          // Act
+          for (int i = 0; i < 200; i += 3) {
+               Item item = new Item(String.valueOf(i % 11), "name" + i % 5,
+                       LocalDate.of(2019, 1 + i % 3, 1 + i % 28));
+               if (i % 2 == 0) {
+                    warehouse.removeItem(item);
+               } else {
+                    warehouse.adjustItem(item, i % 4 == 1 ? -4 : 20);
+               }
+          }
+          warehouse.addItem(new Item("1", "name9", LocalDate.of(2019, 5, 5)), 7);
+
+          // Assert
+          Assert.assertSame(byName, warehouse.aggregate(ItemGrouping.NAME));
+          assertSameGroups(recompute(warehouse, ItemGrouping.NAME), byName);
+          assertSameGroups(recompute(warehouse, ItemGrouping.EXPIRATION_MONTH), byMonth);
+          Assert.assertEquals(LocalDate.of(2019, 5, 1),
+                  byMonth.getGroups().get(byMonth.getGroupCount() - 1).getKey());
+     }
+
+     @Test
+     public void TopItemsMatchSortedItems() {
+
+          // Arrange
+          Warehouse warehouse = new Warehouse();
+          for (int i = 0; i < 300; i++) {
+               warehouse.addItem(new Item(String.valueOf(i % 11), "name" + i % 7,
+                       LocalDate.of(2019, 1 + i % 12, 1 + i % 28)), i % 23 + 1);
+          }
+          List<Map.Entry<Item, Long>> sorted = new ArrayList<>(warehouse.getItems().entrySet());
+          sorted.sort(Comparator.comparingLong((Map.Entry<Item, Long> e) -> e.getValue())
+                  .thenComparing(Map.Entry.comparingByKey()));
+
+          // Act
+          LinkedHashMap<Item, Long> result = warehouse.getTopItems(ItemFilter.all(), ItemOrder.QUANTITY, 20);
+          LinkedHashMap<Item, Long> expiring = warehouse.getTopItems(
+                  ItemFilter.quantityAtLeast(10), ItemOrder.EXPIRATION, 5);
+
+          // Assert
+          Assert.assertEquals(new ArrayList<>(sorted.subList(0, 20)), new ArrayList<>(result.entrySet()));
+          Assert.assertEquals(5, expiring.size());
+          int previousDay = Integer.MIN_VALUE;
+          for (Map.Entry<Item, Long> entry : expiring.entrySet()) {
+               Assert.assertTrue(entry.getValue() >= 10);
+               Assert.assertTrue(entry.getKey().getExpirationDay() >= previousDay);
+               previousDay = entry.getKey().getExpirationDay();
+          }
+     }
+
+     @Test
+     public void PagesCoverItemsInOrder() {
+
+          // Arrange
+          Warehouse warehouse = new Warehouse();
+          for (int i = 0; i < 95; i++) {
+               warehouse.addItem(new Item(String.valueOf(i % 11), "name" + i % 7,
+                       LocalDate.of(2019, 1, 1 + i % 28)), i + 1);
+          }
+          List<Item> expected = new ArrayList<>(warehouse.getItems().keySet());
+          Collections.sort(expected);
+
+          // Act
+          List<Item> result = new ArrayList<>();
+          int pageCount = 0;
+          Item cursor = null;
+          do {
+               ItemPage page = warehouse.getPage(cursor, 10);
+               result.addAll(page.getItems().keySet());
+               cursor = page.getNextCursor();
+               pageCount++;
+          } while (cursor != null);
+
+          // Assert
+          Assert.assertEquals(expected, result);
+          Assert.assertEquals((expected.size() + 9) / 10, pageCount);
+     }
+
+     @Test
+     public void ReportCacheIsInvalidatedByUpdates() throws IOException {
+
+          // Arrange
+          Warehouse warehouse = new Warehouse();
+          Item apples = new Item("111", "Apples", LocalDate.of(2019, 5, 5));
+          warehouse.addItem(apples, 3);
+          ResultCache cache = warehouse.enableReportCache(1024);
+          StringWriter first = new StringWriter();
+          StringWriter repeated = new StringWriter();
+          StringWriter updated = new StringWriter();
+
+          // Act
+          warehouse.writeInsufficientQuantityItems(10, first);
+          warehouse.writeInsufficientQuantityItems(10, repeated);
+          warehouse.addItem(apples, 4);
+          warehouse.writeInsufficientQuantityItems(10, updated);
+
+          // Assert
+          Assert.assertEquals(first.toString(), repeated.toString());
+          Assert.assertTrue(updated.toString().contains("Quantity: 7"));
+          Assert.assertEquals(1, cache.getHitCount());
+          Assert.assertEquals(2, cache.getMissCount());
+     }
+
+     private static ItemAggregation recompute(Warehouse warehouse, ItemGrouping grouping) {
+
+          ItemAggregation aggregation = new ItemAggregation(grouping);
+          warehouse.forEachItem(aggregation::add);
+          return aggregation;
+     }
+
+     private static void assertSameGroups(ItemAggregation expected, ItemAggregation actual) {
+
+          Assert.assertEquals(expected.getGroupCount(), actual.getGroupCount());
+          Assert.assertEquals(expected.getGroups().toString(), actual.getGroups().toString());
+     }
+
+     private static List<Map.Entry<Item, Long>> getSortedEntries(Map<Item, Long> items) {
+
+          List<Map.Entry<Item, Long>> sorted = new ArrayList<>(items.entrySet());
+          sorted.sort(Map.Entry.comparingByKey());
+          return sorted;
+     }
+}
@@ -0,0 +1,265 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.ItemConsumer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses .csv rows straight from bytes of a file region.
+ * Quantities and dates are decoded in place and item names and codes are
+ * looked up in a byte-keyed dictionary, so repeated values do not allocate
+ * a new String per field. Used by MappedCsvReader and PipelinedCsvLoader.
+ * Parsers of the same load may share a second-level dictionary of Strings,
+ * which is only consulted the first time a parser sees a value.
+ *
+ * Instances are not thread-safe; use one parser per thread.
+ */
+final class CsvRowParser {
+
+    private static final byte DELIMITER = ',';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final boolean adjustments;
+    private final ByteStringDictionary strings;
+    private final int[] dateParts = new int[3];
+
+    // field bounds of the row currently being parsed
+    private final int[] fieldStart = new int[Utilities.Indexes.EXP_DATE_INDEX + 1];
+    private final int[] fieldEnd = new int[Utilities.Indexes.EXP_DATE_INDEX + 1];
+
+    /**
+     * Constructor
+     * @param adjustments true if rows are quantity adjustments that
+     *                    can be negative; false if rows are items to load
+     */
+    CsvRowParser(boolean adjustments) {
+        this(adjustments, null);
+    }
+
+    /**
+     * Constructor
+     * @param adjustments true if rows are quantity adjustments that
+     *                    can be negative; false if rows are items to load
+     * @param sharedStrings names and codes shared by parsers of the same load; null if not shared
+     */
+    CsvRowParser(boolean adjustments, ConcurrentMap<String, String> sharedStrings) {
+        this.adjustments = adjustments;
+        this.strings = new ByteStringDictionary(sharedStrings);
+    }
+
+    /**
+     * Parses single row and passes its item to the action
+     * @param buffer file region
+     * @param from index of the first row byte
+     * @param to index after the last row byte
+     * @param windowOffset file offset of buffer index 0
+     * @param action action performed with parsed item
+     */
+    void parseRow(ByteBuffer buffer, int from, int to,
+                  long windowOffset, ItemConsumer action)
+            throws IOException, ParseException {
+
+        if (to > from && buffer.get(to - 1) == CARRIAGE_RETURN) {
+            to--;
+        }
+
+        if (to == from) {
+            return; // blank line
+        }
+
+        int field = 0;
+        int start = from;
+        for (int i = from; i <= to && field < fieldStart.length; i++) {
+            if (i == to || buffer.get(i) == DELIMITER) {
+                fieldStart[field] = start;
+                fieldEnd[field] = i;
+                field++;
+                start = i + 1;
+            }
+        }
+
+        if (field < fieldStart.length) {
+            throw new ParseException("Missing columns in row at offset " +
+                    (windowOffset + from), toErrorOffset(windowOffset + from));
+        }
+
+        String name = strings.get(buffer,
+                fieldStart[Utilities.Indexes.NAME_INDEX],
+                fieldEnd[Utilities.Indexes.NAME_INDEX]);
+        String code = strings.get(buffer,
+                fieldStart[Utilities.Indexes.CODE_INDEX],
+                fieldEnd[Utilities.Indexes.CODE_INDEX]);
+        long quantity = parseLong(buffer,
+                fieldStart[Utilities.Indexes.QUANTITY_INDEX],
+                fieldEnd[Utilities.Indexes.QUANTITY_INDEX]);
+        int expirationDay = parseDate(buffer,
+                fieldStart[Utilities.Indexes.EXP_DATE_INDEX],
+                fieldEnd[Utilities.Indexes.EXP_DATE_INDEX],
+                windowOffset);
+
+        if (quantity <= 0 && !adjustments) {
+            throw new IOException("Negative value specified for item" +
+                    ". Name: " + name +
+                    ", code: " + code);
+        }
+        action.accept(new Item(code, name, expirationDay), quantity);
+    }
+
+    /**
+     * Parses a decimal long value without creating a String
+     * @param buffer file region
+     * @param from index of the first digit (or sign)
+     * @param to index after the last digit
+     * @return parsed value
+     */
+    private static long parseLong(ByteBuffer buffer, int from, int to) {
+
+        boolean negative = from < to && buffer.get(from) == '-';
+        int i = negative || (from < to && buffer.get(from) == '+') ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException("Empty quantity value");
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Invalid quantity value: " +
+                        decode(buffer, from, to));
+            }
+            value = value * 10 + digit;
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a yyyy-MM-dd date without creating a String
+     * @return expiration date as number of days since 1970-01-01
+     */
+    private int parseDate(ByteBuffer buffer, int from, int to, long windowOffset)
+            throws ParseException {
+
+        try {
+            return DateUtilities.parseEpochDay(buffer, from, to, dateParts);
+        } catch (ParseException e) {
+            throw new ParseException(e.getMessage(),
+                    toErrorOffset(windowOffset + from + e.getErrorOffset()));
+        }
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to) {
+
+        return new String(copy(buffer, from, to), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int from, int to) {
+
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return bytes;
+    }
+
+    private static int toErrorOffset(long offset) {
+        return (int) Math.min(offset, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Open addressing String dictionary keyed by raw bytes.
+     * A String is only created the first time a byte sequence is seen.
+     */
+    private static final class ByteStringDictionary {
+
+        private final ConcurrentMap<String, String> sharedStrings;
+        private byte[][] keys = new byte[1024][];
+        private String[] values = new String[1024];
+        private int[] hashes = new int[1024];
+        private int size;
+
+        ByteStringDictionary(ConcurrentMap<String, String> sharedStrings) {
+            this.sharedStrings = sharedStrings;
+        }
+
+        String get(ByteBuffer buffer, int from, int to) {
+
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+
+            int mask = keys.length - 1;
+            int slot = mix(hash) & mask;
+            while (keys[slot] != null) {
+                if (hashes[slot] == hash && equal(keys[slot], buffer, from, to)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] key = copy(buffer, from, to);
+            String value = new String(key, StandardCharsets.UTF_8);
+            if (sharedStrings != null) {
+                String shared = sharedStrings.putIfAbsent(value, value);
+                if (shared != null) {
+                    value = shared;
+                }
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            hashes[slot] = hash;
+
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return value;
+        }
+
+        private static boolean equal(byte[] key, ByteBuffer buffer, int from, int to) {
+
+            if (key.length != to - from) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void resize() {
+
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            int[] oldHashes = hashes;
+
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            hashes = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = mix(oldHashes[i]) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
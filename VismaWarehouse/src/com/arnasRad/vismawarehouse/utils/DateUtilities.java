@@ -0,0 +1,244 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+
+/**
+ * Allocation-free conversions between yyyy-MM-dd dates and epoch days
+ * (number of days since 1970-01-01).
+ * All methods are stateless and therefore safe to call from several threads.
+ */
+public class DateUtilities {
+
+    private static final int DAYS_PER_ERA = 146097;     // days in 400 years
+    private static final int DAYS_0000_TO_1970 = 719468;
+    private static final int FORMATTED_LENGTH = 10;     // yyyy-MM-dd
+    // parsed dates are limited so that formatting them cannot overflow int
+    private static final int MAX_EPOCH_DAY = Integer.MAX_VALUE - DAYS_0000_TO_1970;
+
+    /**
+     * Gets epoch day of specified date.
+     * Like a lenient date format, out of range months and days roll over
+     * to following (or preceding) ones, e.g. 2019-13-01 is 2020-01-01.
+     *
+     * @param year  date value
+     * @param month date value, 1 to 12
+     * @param dayOfMonth date value, 1 to 31
+     * @return epoch day of the date
+     * @throws ArithmeticException thrown if epoch day of the date does not fit in an int
+     */
+    public static int getEpochDay(int year, int month, int dayOfMonth) {
+
+        return Math.toIntExact(getEpochDayExact(year, month, dayOfMonth));
+    }
+
+    /**
+     * Computes epoch day in long arithmetic, which cannot overflow for int date values
+     */
+    private static long getEpochDayExact(long year, int month, int dayOfMonth) {
+
+        year += Math.floorDiv(month - 1, 12);
+        month = Math.floorMod(month - 1, 12) + 1;
+
+        // days from civil algorithm; year starts in March so leap day is last
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970 + dayOfMonth - 1;
+    }
+
+    /**
+     * Gets day of month of specified date
+     *
+     * @param epochDay date as number of days since 1970-01-01
+     * @return day of month, 1 to 31
+     */
+    public static int getDayOfMonth(int epochDay) {
+
+        // civil from days algorithm, see appendEpochDay
+        int z = epochDay + DAYS_0000_TO_1970;
+        int dayOfEra = z - Math.floorDiv(z, DAYS_PER_ERA) * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        return dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+    }
+
+    /**
+     * Gets Monday of the week specified date belongs to
+     *
+     * @param epochDay date as number of days since 1970-01-01
+     * @return epoch day of the Monday on or before the date
+     */
+    public static int getFirstDayOfWeek(int epochDay) {
+
+        // 1970-01-01 was a Thursday
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+
+    /**
+     * Gets the first day of the month specified date belongs to
+     *
+     * @param epochDay date as number of days since 1970-01-01
+     * @return epoch day of the first day of the month
+     */
+    public static int getFirstDayOfMonth(int epochDay) {
+
+        return epochDay - getDayOfMonth(epochDay) + 1;
+    }
+
+    /**
+     * Parses yyyy-MM-dd date string
+     *
+     * @param text date string
+     * @return epoch day of the date
+     * @throws ParseException thrown if text is not a valid date or the date is out of range
+     */
+    public static int parseEpochDay(CharSequence text) throws ParseException {
+
+        // same grammar as parseParts, with parts kept in locals so a call allocates nothing
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int part = 0;
+        int digits = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '-' && digits > 0 && part < 2) {
+                part++;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 9) {
+                int digit = c - '0';
+                if (part == 0) {
+                    year = year * 10 + digit;
+                } else if (part == 1) {
+                    month = month * 10 + digit;
+                } else {
+                    day = day * 10 + digit;
+                }
+                digits++;
+            } else {
+                throw new ParseException("Unparseable date: \"" + text + "\"", i);
+            }
+        }
+        if (part != 2 || digits == 0) {
+            throw new ParseException("Unparseable date: \"" + text + "\"", length);
+        }
+
+        long epochDay = getEpochDayExact(year, month, day);
+        if (Math.abs(epochDay) > MAX_EPOCH_DAY) {
+            throw new ParseException("Date is out of range: \"" + text + "\"", 0);
+        }
+        return (int) epochDay;
+    }
+
+    /**
+     * Parses yyyy-MM-dd date stored in bytes [from, to) of the buffer.
+     * Buffer position is not changed.
+     *
+     * @param buffer buffer containing ASCII date
+     * @param from   index of the first date byte
+     * @param to     index after the last date byte
+     * @param parts  array of at least 3 elements reused to hold year, month and day
+     * @return epoch day of the date
+     * @throws ParseException thrown if bytes do not contain a valid date or the date is out of range
+     */
+    public static int parseEpochDay(ByteBuffer buffer, int from, int to, int[] parts)
+            throws ParseException {
+
+        int errorIndex = parseParts(buffer, from, to, parts);
+        long epochDay = errorIndex >= 0 ? 0 : getEpochDayExact(parts[0], parts[1], parts[2]);
+        if (errorIndex >= 0 || Math.abs(epochDay) > MAX_EPOCH_DAY) {
+            byte[] bytes = new byte[to - from];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(from + i);
+            }
+            throw new ParseException((errorIndex >= 0 ? "Unparseable date: \"" : "Date is out of range: \"") +
+                    new String(bytes) + "\"", Math.max(errorIndex - from, 0));
+        }
+        return (int) epochDay;
+    }
+
+    /**
+     * Reads year, month and day numbers separated by '-' from the buffer
+     * @return index of the first invalid byte; -1 if the whole range is a date
+     */
+    private static int parseParts(ByteBuffer buffer, int from, int to, int[] parts) {
+
+        parts[0] = parts[1] = parts[2] = 0;
+        int part = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            int c = buffer.get(i);
+            if (c == '-' && digits > 0 && part < 2) {
+                part++;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 9) {
+                parts[part] = parts[part] * 10 + (c - '0');
+                digits++;
+            } else {
+                return i;
+            }
+        }
+
+        return part == 2 && digits > 0 ? -1 : to;
+    }
+
+    /**
+     * Formats epoch day as yyyy-MM-dd string
+     *
+     * @param epochDay date to format
+     * @return formatted date
+     */
+    public static String formatEpochDay(int epochDay) {
+
+        StringBuilder sb = new StringBuilder(FORMATTED_LENGTH);
+        appendEpochDay(sb, epochDay);
+        return sb.toString();
+    }
+
+    /**
+     * Appends epoch day formatted as yyyy-MM-dd to a reusable builder
+     *
+     * @param sb       builder to append to
+     * @param epochDay date to format
+     * @return the same builder
+     */
+    public static StringBuilder appendEpochDay(StringBuilder sb, int epochDay) {
+
+        // civil from days algorithm, inverse of getEpochDay
+        int z = epochDay + DAYS_0000_TO_1970;
+        int era = Math.floorDiv(z, DAYS_PER_ERA);
+        int dayOfEra = z - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 0) {
+            sb.append('-');
+            year = -year;
+        }
+        appendPadded(sb, year, 4);
+        sb.append('-');
+        appendPadded(sb, month, 2);
+        sb.append('-');
+        appendPadded(sb, day, 2);
+        return sb;
+    }
+
+    private static void appendPadded(StringBuilder sb, int value, int width) {
+
+        for (int limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                sb.append('0');
+            }
+        }
+        sb.append(value);
+    }
+}
@@ -0,0 +1,380 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.ItemConsumer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * External merge sort of warehouse items, for item sets larger than the heap.
+ * Accepted items are collected in memory, summing quantities of equal items,
+ * until their estimated size reaches the memory budget. Collected items are
+ * then sorted and spilled to a temporary run file. Sorted items are produced
+ * by a k-way merge of all runs, which sums quantities of equal items found in
+ * different runs. At most MAX_MERGE_WIDTH runs are read at a time; if there
+ * are more, runs are first merged into larger ones.
+ *
+ * Items are sorted with Item.compareTo: firstly by name, then code and lastly
+ * by expiration date. If all items fit in the budget, nothing is written to disk.
+ *
+ * Run file layout (big-endian), one record per item:
+ * flags    - byte; bit 0 set if name equals the previous record's, bit 1 for code
+ * name     - modified UTF-8, omitted if flag is set
+ * code     - modified UTF-8, omitted if flag is set
+ * day      - expiration date in days since 1970-01-01 (int)
+ * quantity - long
+ */
+public class ExternalItemSorter implements ItemConsumer, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_MERGE_WIDTH = 256;
+    // estimated heap size of a collected item without its strings:
+    // HashMap node and table slot, boxed quantity, Item and two String headers
+    private static final int ENTRY_OVERHEAD = 160;
+    private static final int SAME_NAME = 1;
+    private static final int SAME_CODE = 2;
+
+    private final long memoryBudget;
+    private final Path directory;
+    private final HashMap<Item, Long> collected = new HashMap<>();
+    private long collectedSize;
+    // runs are merged from the front; merged runs are appended to the back
+    private final ArrayDeque<Run> runs = new ArrayDeque<>();
+    private int spillCount;
+
+    /**
+     * Sorted items spilled to a temporary file
+     */
+    private static final class Run {
+
+        private final Path path;
+        private final long count;
+
+        Run(Path path, long count) {
+            this.path = path;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Writes records of a run file
+     */
+    private static final class RunWriter implements Closeable {
+
+        private final DataOutputStream output;
+        private String name;
+        private String code;
+        private long count;
+
+        RunWriter(Path path) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+        }
+
+        void write(Item item, long quantity) throws IOException {
+
+            int flags = (item.getName().equals(name) ? SAME_NAME : 0) |
+                    (item.getCode().equals(code) ? SAME_CODE : 0);
+            output.writeByte(flags);
+            if ((flags & SAME_NAME) == 0) {
+                name = item.getName();
+                output.writeUTF(name);
+            }
+            if ((flags & SAME_CODE) == 0) {
+                code = item.getCode();
+                output.writeUTF(code);
+            }
+            output.writeInt(item.getExpirationDay());
+            output.writeLong(quantity);
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+    }
+
+    /**
+     * Reads records of a run file; current record is the merge head of the run
+     */
+    private static final class RunReader implements Closeable {
+
+        private final DataInputStream input;
+        private long remaining;
+        private String name;
+        private String code;
+        private Item item;
+        private long quantity;
+
+        RunReader(Run run) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), BUFFER_SIZE));
+            remaining = run.count;
+        }
+
+        /**
+         * Reads the next record
+         * @return false if the run has no more records
+         */
+        boolean next() throws IOException {
+
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            int flags = input.readByte();
+            if ((flags & SAME_NAME) == 0) {
+                name = input.readUTF();
+            }
+            if ((flags & SAME_CODE) == 0) {
+                code = input.readUTF();
+            }
+            item = new Item(code, name, input.readInt());
+            quantity = input.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Receives merged items; may fail with IOException, unlike ItemConsumer
+     */
+    private interface ItemSink {
+        void accept(Item item, long quantity) throws IOException;
+    }
+
+    /**
+     * Writes records of a new run
+     */
+    private interface RunContent {
+        void writeTo(RunWriter writer) throws IOException;
+    }
+
+    /**
+     * Constructor
+     * Run files are created in the default temporary directory
+     * @param memoryBudget approximate heap size in bytes items may be collected in before they are spilled
+     */
+    public ExternalItemSorter(long memoryBudget) {
+
+        this(memoryBudget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Constructor
+     * @param memoryBudget approximate heap size in bytes items may be collected in before they are spilled
+     * @param directory directory of temporary run files
+     */
+    public ExternalItemSorter(long memoryBudget, Path directory) {
+
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+    }
+
+    /**
+     * Adds an item to be sorted.
+     * Quantities of equal items are summed. Spilling failures are thrown as UncheckedIOException
+     * @param item item to add
+     * @param quantity item quantity
+     */
+    @Override
+    public void accept(Item item, long quantity) {
+
+        int size = collected.size();
+        collected.merge(item, quantity, Long::sum);
+        if (collected.size() > size) {
+            collectedSize += ENTRY_OVERHEAD + 2L * (item.getName().length() + item.getCode().length());
+        }
+        if (collectedSize >= memoryBudget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Getter
+     * @return number of runs spilled to disk so far, including runs written by intermediate merges
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * Getter
+     * @return true if no items were added
+     */
+    public boolean isEmpty() {
+        return collected.isEmpty() && runs.isEmpty();
+    }
+
+    /**
+     * Passes all added items to the action in Item.compareTo order, each distinct item once
+     * with its total quantity. Items collected in memory are spilled first if there are
+     * spilled runs already. Sorter can be used only once
+     * @param action action performed with every item; UncheckedIOException it throws is
+     * rethrown as IOException
+     * @throws IOException thrown if run files cannot be written or read
+     */
+    public void forEachSorted(ItemConsumer action) throws IOException {
+
+        try {
+            if (runs.isEmpty()) {
+                for (Map.Entry<Item, Long> entry : sortCollected()) {
+                    action.accept(entry.getKey(), entry.getValue());
+                }
+                collected.clear();
+                return;
+            }
+
+            if (!collected.isEmpty()) {
+                spill();
+            }
+            while (runs.size() > MAX_MERGE_WIDTH) {
+                List<Run> merged = pollRuns(MAX_MERGE_WIDTH);
+                runs.addLast(writeRun(writer -> merge(merged, writer::write)));
+            }
+            merge(pollRuns(runs.size()), action::accept);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Deletes run files that were not merged yet
+     * @throws IOException thrown if a run file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+
+        while (!runs.isEmpty()) {
+            Files.deleteIfExists(runs.pollFirst().path);
+        }
+        collected.clear();
+    }
+
+    /**
+     * Sorts collected items and writes them to a new run file
+     */
+    private void spill() throws IOException {
+
+        runs.addLast(writeRun(writer -> {
+            for (Map.Entry<Item, Long> entry : sortCollected()) {
+                writer.write(entry.getKey(), entry.getValue());
+            }
+        }));
+        collected.clear();
+        collectedSize = 0;
+    }
+
+    private List<Map.Entry<Item, Long>> sortCollected() {
+
+        // sorting entry references only, like report writing does
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map.Entry<Item, Long>[] entries = collected.entrySet().toArray(new Map.Entry[0]);
+        Arrays.sort(entries, Map.Entry.comparingByKey());
+        return Arrays.asList(entries);
+    }
+
+    /**
+     * Writes a new run file; the file is deleted if writing fails
+     */
+    private Run writeRun(RunContent content) throws IOException {
+
+        Path path = Files.createTempFile(directory, "warehouse-items", ".run");
+        long count;
+        try (RunWriter writer = new RunWriter(path)) {
+            content.writeTo(writer);
+            count = writer.count;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        spillCount++;
+        return new Run(path, count);
+    }
+
+    /**
+     * Removes runs from the front of the queue; their files are deleted once they are merged
+     */
+    private List<Run> pollRuns(int count) {
+
+        List<Run> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(runs.pollFirst());
+        }
+        return result;
+    }
+
+    /**
+     * K-way merge of sorted runs. Quantities of equal items are summed,
+     * so every distinct item is passed to the sink once. Run files are deleted
+     */
+    private static void merge(List<Run> runs, ItemSink sink) throws IOException {
+
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(runs.size(),
+                (reader1, reader2) -> reader1.item.compareTo(reader2.item));
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (Run run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next()) {
+                    heads.add(reader);
+                }
+            }
+
+            Item pending = null;
+            long pendingQuantity = 0;
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                if (reader.item.equals(pending)) {
+                    pendingQuantity += reader.quantity;
+                } else {
+                    if (pending != null) {
+                        sink.accept(pending, pendingQuantity);
+                    }
+                    pending = reader.item;
+                    pendingQuantity = reader.quantity;
+                }
+                if (reader.next()) {
+                    heads.add(reader);
+                }
+            }
+            if (pending != null) {
+                sink.accept(pending, pendingQuantity);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            for (Run run : runs) {
+                Files.deleteIfExists(run.path);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Size and modification time of a file, together with the time they were read.
+ * Used to tell whether a file made from another one (e.g. a snapshot of a
+ * .csv file) is still up to date with it.
+ *
+ * Modification times are only as precise as the file system stores them,
+ * so a file changed shortly after its version was read can keep the same
+ * size and modification time. Such a version is not settled and must not
+ * be trusted to detect later changes.
+ */
+public final class FileVersion {
+
+    // coarsest modification time resolution of common file systems (FAT)
+    private static final long TIME_RESOLUTION_MILLIS = 2000;
+
+    private final long size;
+    private final long lastModified;
+    private final long readTime;
+
+    FileVersion(long size, long lastModified, long readTime) {
+
+        this.size = size;
+        this.lastModified = lastModified;
+        this.readTime = readTime;
+    }
+
+    /**
+     * Reads current version of a file
+     *
+     * @param file file to read the version of
+     * @return version of the file
+     * @throws IOException thrown if file attributes cannot be read
+     */
+    public static FileVersion read(Path file) throws IOException {
+
+        // read time first: changes made after it get a later modification time
+        long readTime = System.currentTimeMillis();
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long size = Files.size(file);
+        return new FileVersion(size, lastModified, readTime);
+    }
+
+    /**
+     * Getter
+     * @return size of the file in bytes
+     */
+    public long getSize() {
+
+        return size;
+    }
+
+    /**
+     * Getter
+     * @return modification time of the file in milliseconds since the epoch
+     */
+    public long getLastModified() {
+
+        return lastModified;
+    }
+
+    /**
+     * Getter
+     * @return time the version was read in milliseconds since the epoch
+     */
+    public long getReadTime() {
+
+        return readTime;
+    }
+
+    /**
+     * Checks whether the file was last modified long enough before the version
+     * was read, so that any later change gets a different modification time
+     * @return true if later changes of the file can be detected with matches
+     */
+    public boolean isSettled() {
+
+        return lastModified <= readTime - TIME_RESOLUTION_MILLIS;
+    }
+
+    /**
+     * Checks whether two versions have the same size and modification time
+     * @param other version to compare with
+     * @return true if versions describe the same file contents, provided
+     * that this version is settled
+     */
+    public boolean matches(FileVersion other) {
+
+        return size == other.size && lastModified == other.lastModified;
+    }
+}
@@ -0,0 +1,166 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets.
+ * Every power of two is split into SUB_BUCKET_COUNT equal buckets, so
+ * percentiles are reported with at most about 3% relative error for any
+ * latency from 1 ns to centuries. Buckets are preallocated; recording is
+ * a few atomic increments and never allocates, so it can be used on hot
+ * paths and from several threads at once.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // values below 2 * SUB_BUCKET_COUNT have a bucket each; then SUB_BUCKET_COUNT buckets per power of two
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Constructor
+     * @param name name of the measured operation
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Getter
+     * @return name of the measured operation
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a latency
+     * @param nanos latency in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(getBucket(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Records time elapsed since a timer started with Metrics.startTimer.
+     * Nothing is recorded if metrics were disabled when the timer started
+     * @param startNanos value returned by Metrics.startTimer
+     */
+    public void recordSince(long startNanos) {
+
+        if (startNanos != Metrics.TIMER_DISABLED) {
+            record(System.nanoTime() - startNanos);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : sum.sum() / 1000.0 / recorded;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getPercentile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getPercentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return getPercentile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return getPercentile(1) / 1000.0;
+    }
+
+    /**
+     * Gets a latency percentile
+     * @param percentile share of recorded latencies, 0 to 1
+     * @return highest latency in nanoseconds of the bucket containing the percentile;
+     * 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return getBucketMax(i);
+            }
+        }
+        return getBucketMax(BUCKET_COUNT - 1);
+    }
+
+    @Override
+    public void reset() {
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+    }
+
+    /**
+     * Overrided method
+     * @return histogram summary
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d, mean=%.1f us, p50=%.1f us, p99=%.1f us, p99.9=%.1f us, max=%.1f us",
+                name, getCount(), getMeanMicros(), getP50Micros(), getP99Micros(),
+                getP999Micros(), getMaxMicros());
+    }
+
+    private static int getBucket(long value) {
+
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long getBucketMax(int bucket) {
+
+        if (bucket < 2 * SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long mantissa = bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,48 @@
+package com.arnasRad.vismawarehouse.utils;
+
+/**
+ * JMX management interface of a latency histogram
+ */
+public interface LatencyHistogramMBean {
+
+    /**
+     * Getter
+     * @return number of recorded latencies
+     */
+    long getCount();
+
+    /**
+     * Getter
+     * @return mean latency in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * Getter
+     * @return median latency in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * Getter
+     * @return 99th percentile latency in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * Getter
+     * @return 99.9th percentile latency in microseconds
+     */
+    double getP999Micros();
+
+    /**
+     * Getter
+     * @return maximum latency in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * Clears recorded latencies
+     */
+    void reset();
+}
@@ -0,0 +1,71 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.Warehouse;
+
+/**
+ * Warehouse loaded from a .csv file together with the length of the file
+ * it was loaded from. Rows appended to the file later start at that length,
+ * so it is the offset to pass to Utilities.applyWarehouseTail.
+ * Also remembers how much of the warehouse log was replayed, so the log
+ * can be continued with WarehouseLog.open.
+ */
+public class LoadedWarehouse {
+
+    private final Warehouse warehouse;
+    private final long sourceSize;
+    private final WarehouseLog.Header logHeader;
+    private final long logSize;
+    private final long logSourceSize;
+
+    /**
+     * Constructor
+     * @param warehouse loaded warehouse
+     * @param sourceSize number of bytes of the .csv file the warehouse contains rows of
+     * @param logHeader header of the replayed log; null if there is no log
+     * @param logSize size of the replayed part of the log; 0 if the log
+     *                has to be created (or reset) with logHeader when opened
+     * @param logSourceSize number of bytes of the .csv file whose rows are in the
+     *                      log or its base; rows after it were applied by the load
+     */
+    LoadedWarehouse(Warehouse warehouse, long sourceSize, WarehouseLog.Header logHeader,
+                    long logSize, long logSourceSize) {
+        this.warehouse = warehouse;
+        this.sourceSize = sourceSize;
+        this.logHeader = logHeader;
+        this.logSize = logSize;
+        this.logSourceSize = logSourceSize;
+    }
+
+    /**
+     * Getter
+     * @return loaded warehouse
+     */
+    public Warehouse getWarehouse() {
+
+        return warehouse;
+    }
+
+    /**
+     * Getter
+     * @return number of bytes of the .csv file the warehouse contains rows of
+     */
+    public long getSourceSize() {
+
+        return sourceSize;
+    }
+
+    WarehouseLog.Header getLogHeader() {
+
+        return logHeader;
+    }
+
+    long getLogSize() {
+
+        return logSize;
+    }
+
+    long getLogSourceSize() {
+
+        return logSourceSize;
+    }
+}
@@ -0,0 +1,231 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.ItemConsumer;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads warehouse items from a memory-mapped .csv file.
+ * Rows are parsed straight from the mapped bytes (see CsvRowParser): quantities
+ * and dates are decoded in place and item names and codes are looked up in a
+ * byte-keyed dictionary, so repeated values do not allocate a new String per field.
+ * Readers of different chunks and files of the same load can be given a shared
+ * String dictionary, so they share the same name and code instances.
+ *
+ * Reader either loads items, rejecting non-positive quantities, or
+ * applies rows as quantity adjustments (see Warehouse.adjustItem),
+ * which lets delta files subtract stock with negative quantities.
+ *
+ * Instances are not thread-safe; use one reader per thread.
+ */
+public class MappedCsvReader {
+
+    // largest region of the file mapped at once
+    private static final long MAX_WINDOW_SIZE = 1L << 30;
+    private static final int ROW_SEARCH_BUFFER_SIZE = 8192;
+    private static final byte NEW_LINE = '\n';
+
+    private final FileChannel channel;
+    private final boolean adjustments;
+    private final CsvRowParser parser;
+
+    /**
+     * Constructor
+     * @param channel opened channel of the .csv file to read
+     */
+    public MappedCsvReader(FileChannel channel) {
+        this(channel, false);
+    }
+
+    /**
+     * Constructor
+     * @param channel opened channel of the .csv file to read
+     * @param adjustments true if rows are quantity adjustments that
+     *                    can be negative; false if rows are items to load
+     */
+    public MappedCsvReader(FileChannel channel, boolean adjustments) {
+        this(channel, adjustments, null);
+    }
+
+    /**
+     * Constructor
+     * @param channel opened channel of the .csv file to read
+     * @param adjustments true if rows are quantity adjustments that
+     *                    can be negative; false if rows are items to load
+     * @param sharedStrings names and codes shared by readers of the same load,
+     *                      which may run on different threads; null if not shared
+     */
+    public MappedCsvReader(FileChannel channel, boolean adjustments, ConcurrentMap<String, String> sharedStrings) {
+        this.channel = channel;
+        this.adjustments = adjustments;
+        this.parser = new CsvRowParser(adjustments, sharedStrings);
+    }
+
+    /**
+     * Gets position of the first byte after the column names line
+     * @return offset of the first data row
+     * @throws IOException thrown if the file cannot be read
+     */
+    public long getFirstRowOffset() throws IOException {
+
+        long size = channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                0, Math.min(size, MAX_WINDOW_SIZE));
+
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) == NEW_LINE) {
+                return i + 1;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Gets offset of the first row that starts at or after specified position.
+     * Used to split file into chunks at row boundaries.
+     * @param position offset to start searching from
+     * @return offset of the next row start or file size if there are no more rows
+     * @throws IOException thrown if the file cannot be read
+     */
+    public long getNextRowOffset(long position) throws IOException {
+
+        if (position == 0) {
+            return 0;
+        }
+
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(ROW_SEARCH_BUFFER_SIZE);
+        // row starts at position if previous byte ends a line
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == NEW_LINE) {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+
+        return size;
+    }
+
+    /**
+     * Gets offset after the last line break at or after specified position.
+     * Used to skip a row that is still being appended to the file.
+     * @param position offset to start searching from
+     * @return offset after the last complete row or position if
+     * there is no complete row after it
+     * @throws IOException thrown if the file cannot be read
+     */
+    public long getCompleteRowsEnd(long position) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(ROW_SEARCH_BUFFER_SIZE);
+        long end = channel.size();
+        while (end > position) {
+            long offset = Math.max(position, end - ROW_SEARCH_BUFFER_SIZE);
+            buffer.clear();
+            buffer.limit((int) (end - offset));
+            int read = 0;
+            while (buffer.hasRemaining() && read >= 0) {
+                read = channel.read(buffer, offset + buffer.position());
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == NEW_LINE) {
+                    return offset + i + 1;
+                }
+            }
+            end = offset;
+        }
+
+        return position;
+    }
+
+    /**
+     * Parses every row located in file region [start, end) and adds
+     * parsed items to (or, for adjustment rows, adjusts them in) the warehouse.
+     * Region must start at the beginning of a row and end either at the
+     * beginning of a row or at the end of the file.
+     *
+     * @param start offset of the first row to parse
+     * @param end offset the region ends at
+     * @param warehouse warehouse parsed items are added to
+     * @throws IOException thrown if the file cannot be read or quantity value is invalid
+     * @throws ParseException thrown if row contains an invalid expiration date
+     */
+    public void read(long start, long end, Warehouse warehouse)
+            throws IOException, ParseException {
+
+        read(start, end, adjustments ? warehouse::adjustItem : warehouse::addItem);
+    }
+
+    /**
+     * Parses every row located in file region [start, end) and passes
+     * parsed items with their quantities to the action.
+     * Region must start at the beginning of a row and end either at the
+     * beginning of a row or at the end of the file.
+     *
+     * @param start offset of the first row to parse
+     * @param end offset the region ends at
+     * @param action action performed with every parsed item
+     * @throws IOException thrown if the file cannot be read or quantity value is invalid
+     * @throws ParseException thrown if row contains an invalid expiration date
+     */
+    public void read(long start, long end, ItemConsumer action)
+            throws IOException, ParseException {
+
+        long timer = Metrics.startTimer();
+        long rows = 0;
+        long windowStart = start;
+        while (windowStart < end) {
+
+            long windowSize = Math.min(end - windowStart, MAX_WINDOW_SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    windowStart, windowSize);
+            boolean lastWindow = windowStart + windowSize == end;
+
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+
+                int lineEnd = indexOf(buffer, NEW_LINE, lineStart, limit);
+                if (lineEnd == limit && !lastWindow) {
+                    // row continues in the next window
+                    break;
+                }
+
+                parser.parseRow(buffer, lineStart, lineEnd, windowStart, action);
+                lineStart = lineEnd + 1;
+                rows++;
+            }
+
+            if (lineStart == 0) {
+                throw new IOException("Row at offset " + windowStart +
+                        " is longer than " + MAX_WINDOW_SIZE + " bytes");
+            }
+            windowStart += Math.min(lineStart, limit);
+        }
+        Metrics.recordParse(rows, end - start, timer);
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return to;
+    }
+}
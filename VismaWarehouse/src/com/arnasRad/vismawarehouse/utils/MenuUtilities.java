@@ -8,7 +8,8 @@ public class MenuUtilities {
     public static final class MainOptions {
 
         public static final byte LOAD = 1;
-        public static final byte ABOUT = 2;
+        public static final byte WATCH = 2;
+        public static final byte ABOUT = 3;
         public static final byte QUIT = 0;
     }
 
@@ -21,6 +22,10 @@ public class MenuUtilities {
         public static final byte QUANTITIES = 2;
         public static final byte EXPIRES = 3;
         public static final byte SOON_TO_EXPIRE = 4;
+        public static final byte NEW_ROWS = 5;
+        public static final byte DELTA = 6;
+        public static final byte CHECKPOINT = 7;
+        public static final byte TOTALS = 8;
         public static final byte MAIN_MENU = 0;
     }
 
@@ -40,7 +45,8 @@ public class MenuUtilities {
             drawMenuLine(null);
             drawMenuLine(null);
             drawMenuOptionLine("LOAD FILE", 1);
-            drawMenuOptionLine("ABOUT", 2);
+            drawMenuOptionLine("WATCH FILE", 2);
+            drawMenuOptionLine("ABOUT", 3);
             drawMenuOptionLine("QUIT", 0);
             drawMenuLine(null);
             drawHorizontalLine();
@@ -55,6 +61,15 @@ public class MenuUtilities {
      * @param fileName name of the file that was loaded into the system
      */
     public static void printSubMenu(String fileName) {
+        printSubMenu(fileName, true);
+    }
+
+    /**
+     * Prints the sub menu screen to the console
+     * @param fileName name of the file that was loaded into the system
+     * @param updatable true to include options that update loaded items
+     */
+    public static void printSubMenu(String fileName, boolean updatable) {
         try {
             menuOptionCount = -1;
             drawHorizontalLine();
@@ -66,6 +81,12 @@ public class MenuUtilities {
             drawMenuOptionLine("INSUFFICIENT QUANTITIES", 2);
             drawMenuOptionLine("EXPIRED ITEMS", 3);
             drawMenuOptionLine("SOON TO EXPIRE ITEMS", 4);
+            if (updatable) {
+                drawMenuOptionLine("APPLY NEW ROWS", 5);
+                drawMenuOptionLine("APPLY DELTA FILE", 6);
+                drawMenuOptionLine("SAVE CHECKPOINT", 7);
+                drawMenuOptionLine("ITEM TOTALS", 8);
+            }
             drawMenuOptionLine("MAIN MENU", 0);
             drawMenuLine(null);
             drawHorizontalLine();
@@ -0,0 +1,263 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of loading, updating, querying and
+ * rendering warehouse items.
+ * Metrics are disabled by default. While disabled, instrumented code only
+ * reads a flag: timers are not started and nothing is recorded.
+ * Metrics can be enabled with setEnabled, through JMX once registerMBeans
+ * was called, or with the --metrics command line option.
+ *
+ * Instrumented code measures an operation like this:
+ *
+ * long start = Metrics.startTimer();
+ * ...
+ * Metrics.QUERY_EXPIRED.recordSince(start);
+ */
+public class Metrics {
+
+    /**
+     * Value of startTimer while metrics are disabled
+     */
+    public static final long TIMER_DISABLED = Long.MIN_VALUE;
+
+    public static final LatencyHistogram LOAD = new LatencyHistogram("load");
+    public static final LatencyHistogram QUERY_LIST = new LatencyHistogram("query.list");
+    public static final LatencyHistogram QUERY_INSUFFICIENT = new LatencyHistogram("query.insufficient");
+    public static final LatencyHistogram QUERY_EXPIRED = new LatencyHistogram("query.expired");
+    public static final LatencyHistogram QUERY_SOON_TO_EXPIRE = new LatencyHistogram("query.soonToExpire");
+    public static final LatencyHistogram QUERY_TOP = new LatencyHistogram("query.top");
+    public static final LatencyHistogram QUERY_PAGE = new LatencyHistogram("query.page");
+    public static final LatencyHistogram QUERY_BATCH = new LatencyHistogram("query.batch");
+    public static final LatencyHistogram RENDER = new LatencyHistogram("render");
+
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            LOAD, QUERY_LIST, QUERY_INSUFFICIENT, QUERY_EXPIRED, QUERY_SOON_TO_EXPIRE,
+            QUERY_TOP, QUERY_PAGE, QUERY_BATCH, RENDER
+    };
+    private static final String DOMAIN = "com.arnasRad.vismawarehouse";
+
+    private static volatile boolean enabled;
+    private static boolean registered;
+
+    private static final LongAdder parsedRows = new LongAdder();
+    private static final LongAdder parsedBytes = new LongAdder();
+    private static final LongAdder parseNanos = new LongAdder();
+    private static final LongAdder insertedItems = new LongAdder();
+    private static final LongAdder mergedItems = new LongAdder();
+    private static final LongAdder removedItems = new LongAdder();
+
+    /**
+     * Getter
+     * @return true if metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Setter
+     * @param enabled true to start recording metrics, false to stop
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Starts timing an operation
+     * @return current System.nanoTime, or TIMER_DISABLED if metrics are disabled
+     */
+    public static long startTimer() {
+
+        return enabled ? System.nanoTime() : TIMER_DISABLED;
+    }
+
+    /**
+     * Records parsing of a .csv file region
+     * @param rows number of parsed rows
+     * @param bytes size of the region
+     * @param startNanos value returned by startTimer when parsing started
+     */
+    public static void recordParse(long rows, long bytes, long startNanos) {
+
+        if (startNanos != TIMER_DISABLED) {
+            parseNanos.add(System.nanoTime() - startNanos);
+            parsedRows.add(rows);
+            parsedBytes.add(bytes);
+        }
+    }
+
+    /**
+     * Records an addItem call
+     * @param inserted true if a new item was inserted, false if quantity was merged into an existing one
+     */
+    public static void recordAdd(boolean inserted) {
+
+        if (enabled) {
+            (inserted ? insertedItems : mergedItems).increment();
+        }
+    }
+
+    /**
+     * Records a removeItem call
+     */
+    public static void recordRemove() {
+
+        if (enabled) {
+            removedItems.increment();
+        }
+    }
+
+    /**
+     * Gets a text report of all metrics
+     * @return report with a line per counter group and per histogram that recorded latencies
+     */
+    public static String getReport() {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Metrics").append(enabled ? "" : " (disabled)").append(":\n");
+        sb.append(String.format("parse: rows=%d, bytes=%d, rate=%.0f rows/s%n",
+                parsedRows.sum(), parsedBytes.sum(), getParseRowsPerSecond()));
+        sb.append(String.format("items: inserted=%d, merged=%d, removed=%d%n",
+                insertedItems.sum(), mergedItems.sum(), removedItems.sum()));
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            // operations that were not performed are left out
+            if (histogram.getCount() > 0) {
+                sb.append(histogram).append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Clears all counters and latencies
+     */
+    public static void reset() {
+
+        parsedRows.reset();
+        parsedBytes.reset();
+        parseNanos.reset();
+        insertedItems.reset();
+        mergedItems.reset();
+        removedItems.reset();
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Registers metrics and every latency histogram with the platform MBean server
+     * under the com.arnasRad.vismawarehouse domain. Registering again does nothing
+     */
+    public static synchronized void registerMBeans() {
+
+        if (registered) {
+            return;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(new Management(), MetricsMBean.class),
+                    new ObjectName(DOMAIN + ":type=Metrics"));
+            for (LatencyHistogram histogram : HISTOGRAMS) {
+                server.registerMBean(new StandardMBean(histogram, LatencyHistogramMBean.class),
+                        new ObjectName(DOMAIN + ":type=Latency,name=" + histogram.getName()));
+            }
+            registered = true;
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics cannot be registered: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Prints the metrics report periodically on a background thread
+     * @param periodSeconds time between reports
+     * @param out stream to print reports to
+     * @return reporter; closing it stops printing
+     */
+    public static Closeable startReporter(long periodSeconds, PrintStream out) {
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "warehouse-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> out.print(getReport()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        return executor::shutdownNow;
+    }
+
+    private static double getParseRowsPerSecond() {
+
+        long nanos = parseNanos.sum();
+        return nanos == 0 ? 0 : parsedRows.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * Metrics MBean; delegates to static methods
+     */
+    private static final class Management implements MetricsMBean {
+
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getParsedRows() {
+            return parsedRows.sum();
+        }
+
+        @Override
+        public long getParsedBytes() {
+            return parsedBytes.sum();
+        }
+
+        @Override
+        public double getParseRowsPerSecond() {
+            return Metrics.getParseRowsPerSecond();
+        }
+
+        @Override
+        public long getInsertedItems() {
+            return insertedItems.sum();
+        }
+
+        @Override
+        public long getMergedItems() {
+            return mergedItems.sum();
+        }
+
+        @Override
+        public long getRemovedItems() {
+            return removedItems.sum();
+        }
+
+        @Override
+        public String getReport() {
+            return Metrics.getReport();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
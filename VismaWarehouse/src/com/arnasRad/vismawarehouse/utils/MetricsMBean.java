@@ -0,0 +1,67 @@
+package com.arnasRad.vismawarehouse.utils;
+
+/**
+ * JMX management interface of warehouse metrics.
+ * Latencies are exposed by a LatencyHistogramMBean per measured operation
+ */
+public interface MetricsMBean {
+
+    /**
+     * Getter
+     * @return true if metrics are being recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * Setter
+     * @param enabled true to start recording metrics, false to stop
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Getter
+     * @return number of parsed .csv rows
+     */
+    long getParsedRows();
+
+    /**
+     * Getter
+     * @return number of parsed .csv bytes
+     */
+    long getParsedBytes();
+
+    /**
+     * Getter
+     * @return rows parsed per second of parsing time of a single thread
+     */
+    double getParseRowsPerSecond();
+
+    /**
+     * Getter
+     * @return number of addItem calls that inserted a new item
+     */
+    long getInsertedItems();
+
+    /**
+     * Getter
+     * @return number of addItem calls that merged quantity into an existing item
+     */
+    long getMergedItems();
+
+    /**
+     * Getter
+     * @return number of removeItem calls
+     */
+    long getRemovedItems();
+
+    /**
+     * Getter
+     * @return text report of all metrics
+     */
+    String getReport();
+
+    /**
+     * Clears all counters and latencies
+     */
+    void reset();
+}
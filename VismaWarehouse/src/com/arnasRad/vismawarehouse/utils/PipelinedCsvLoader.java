@@ -0,0 +1,427 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.ItemConsumer;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads a .csv file in three pipelined stages, so reading the file,
+ * parsing rows and adding items to the warehouse overlap:
+ *
+ * read      - one thread reads the file into large byte buffers; a row cut
+ *             by the end of a buffer is moved to the start of the next one
+ * parse     - a pool of threads parses buffers into batches of items and quantities
+ * aggregate - the calling thread adds batches to the warehouse
+ *
+ * Buffers and batches are allocated once per load and recycled through
+ * bounded queues. A stage that runs ahead waits for a recycled buffer or batch,
+ * which keeps memory use fixed (backpressure); in steady state only parsed
+ * Item objects are allocated. Loaded warehouse contains the same items as
+ * loadWarehouseItems, but items are inserted in the order batches are parsed.
+ *
+ * Busy and waiting time of every stage is measured; see getReport.
+ * Instances are not thread-safe; use one loader per thread.
+ */
+public class PipelinedCsvLoader {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int BUFFERS_PER_PARSER = 2;
+    private static final int INITIAL_BATCH_CAPACITY = 1 << 14;
+    private static final long POLL_MILLIS = 100;
+    private static final byte NEW_LINE = '\n';
+
+    // marks the end of input in buffer and batch queues
+    private static final Chunk END_OF_CHUNKS = new Chunk(0);
+    private static final Batch END_OF_BATCHES = new Batch();
+
+    private final int parserCount;
+    private final int bufferSize;
+    private final Stage readStage = new Stage("read");
+    private final Stage parseStage = new Stage("parse");
+    private final Stage aggregateStage = new Stage("aggregate");
+    private long loadNanos;
+
+    /**
+     * File region read by the reader; starts at a row start and ends after a line break
+     * or at the end of the file
+     */
+    private static final class Chunk {
+
+        private final byte[] data;
+        private final ByteBuffer buffer;
+        private int length;
+        private long offset;   // file offset of data[0]
+
+        Chunk(int size) {
+            data = new byte[size];
+            buffer = ByteBuffer.wrap(data);
+        }
+    }
+
+    /**
+     * Parsed rows of a chunk
+     */
+    private static final class Batch implements ItemConsumer {
+
+        private Item[] items = new Item[INITIAL_BATCH_CAPACITY];
+        private long[] quantities = new long[INITIAL_BATCH_CAPACITY];
+        private int size;
+        private int bytes;     // size of the parsed chunk
+
+        @Override
+        public void accept(Item item, long quantity) {
+
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            items[size] = item;
+            quantities[size] = quantity;
+            size++;
+        }
+    }
+
+    /**
+     * Work and waiting time of a stage, summed over its threads
+     */
+    private static final class Stage {
+
+        private final String name;
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        void reset() {
+            busyNanos.reset();
+            waitNanos.reset();
+            bytes.reset();
+            rows.reset();
+        }
+
+        <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+
+            long start = System.nanoTime();
+            T element = queue.take();
+            waitNanos.add(System.nanoTime() - start);
+            return element;
+        }
+
+        <T> void put(BlockingQueue<T> queue, T element) throws InterruptedException {
+
+            long start = System.nanoTime();
+            queue.put(element);
+            waitNanos.add(System.nanoTime() - start);
+        }
+
+        String getReport(int threadCount) {
+
+            double busy = busyNanos.sum() / 1e9;
+            String report = String.format("%s (%d %s): busy %.2f s, waiting %.2f s, %.1f MB/s",
+                    name, threadCount, threadCount == 1 ? "thread" : "threads", busy,
+                    waitNanos.sum() / 1e9, busy == 0 ? 0 : bytes.sum() / 1e6 / busy);
+            // reader does not count rows
+            if (rows.sum() > 0) {
+                report += String.format(", %.0f rows/s", rows.sum() / busy);
+            }
+            return report + System.lineSeparator();
+        }
+    }
+
+    /**
+     * Constructor
+     * Uses all but two processors for parsing (the others read and aggregate)
+     * and DEFAULT_BUFFER_SIZE buffers
+     */
+    public PipelinedCsvLoader() {
+
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 2), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor
+     * @param parserCount number of parser threads
+     * @param bufferSize size of read buffers in bytes; every row must fit in a buffer
+     */
+    public PipelinedCsvLoader(int parserCount, int bufferSize) {
+
+        if (parserCount < 1) {
+            throw new IllegalArgumentException("Parser count must be positive: " + parserCount);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.parserCount = parserCount;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Reads data from input .csv file and returns Warehouse object
+     *
+     * @param fileName name of input file to load data from
+     * @return Warehouse object that contains distinct items
+     * @throws IOException thrown if the file cannot be read, quantity value is invalid
+     * or a row does not fit in a buffer
+     * @throws ParseException thrown if row contains an invalid expiration date
+     */
+    public Warehouse load(String fileName) throws IOException, ParseException {
+
+        readStage.reset();
+        parseStage.reset();
+        aggregateStage.reset();
+        long start = System.nanoTime();
+        long timer = Metrics.startTimer();
+
+        int chunkCount = parserCount * BUFFERS_PER_PARSER + 2;
+        int batchCount = parserCount * BUFFERS_PER_PARSER;
+        BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(chunkCount);
+        BlockingQueue<Chunk> filledChunks = new ArrayBlockingQueue<>(chunkCount + parserCount);
+        BlockingQueue<Batch> freeBatches = new ArrayBlockingQueue<>(batchCount);
+        BlockingQueue<Batch> parsedBatches = new ArrayBlockingQueue<>(batchCount + parserCount);
+        for (int i = 0; i < chunkCount; i++) {
+            freeChunks.add(new Chunk(bufferSize));
+        }
+        for (int i = 0; i < batchCount; i++) {
+            freeBatches.add(new Batch());
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parserCount + 1, runnable -> {
+            Thread thread = new Thread(runnable, "warehouse-pipeline-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+
+            long firstRow = new MappedCsvReader(channel).getFirstRowOffset();
+            ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+            executor.execute(() -> {
+                try {
+                    read(channel, firstRow, freeChunks, filledChunks);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            for (int i = 0; i < parserCount; i++) {
+                executor.execute(() -> {
+                    try {
+                        parse(freeChunks, filledChunks, freeBatches, parsedBatches, strings);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+
+            Warehouse warehouse = aggregate(freeBatches, parsedBatches, failure);
+            loadNanos = System.nanoTime() - start;
+            Metrics.recordParse(parseStage.rows.sum(), readStage.bytes.sum(), timer);
+            Metrics.LOAD.recordSince(timer);
+            return warehouse;
+        } finally {
+            // stops stages blocked on queues if another stage failed
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets throughput of every stage of the last load.
+     * Busy time excludes time a stage waited for buffers or batches, so the
+     * stage with the highest busy time limits the load
+     * @return report with a line per stage
+     */
+    public String getReport() {
+
+        double seconds = loadNanos / 1e9;
+        return String.format("Pipelined load: %d rows, %.1f MB in %.2f s (%.1f MB/s)%n",
+                parseStage.rows.sum(), readStage.bytes.sum() / 1e6, seconds,
+                seconds == 0 ? 0 : readStage.bytes.sum() / 1e6 / seconds) +
+                readStage.getReport(1) +
+                parseStage.getReport(parserCount) +
+                aggregateStage.getReport(1);
+    }
+
+    /**
+     * Reader stage: fills chunks with whole rows, moving the incomplete last row
+     * of a chunk to the next chunk
+     */
+    private void read(FileChannel channel, long position, BlockingQueue<Chunk> freeChunks,
+                      BlockingQueue<Chunk> filledChunks) throws IOException, InterruptedException {
+
+        Chunk chunk = readStage.take(freeChunks);
+        chunk.length = 0;
+        chunk.offset = position;
+        channel.position(position);
+
+        while (true) {
+            long start = System.nanoTime();
+            boolean endOfFile = false;
+            ByteBuffer buffer = chunk.buffer;
+            buffer.clear().position(chunk.length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    endOfFile = true;
+                    break;
+                }
+            }
+            readStage.bytes.add(buffer.position() - chunk.length);
+            chunk.length = buffer.position();
+
+            if (endOfFile) {
+                readStage.busyNanos.add(System.nanoTime() - start);
+                if (chunk.length > 0) {
+                    readStage.put(filledChunks, chunk);
+                }
+                break;
+            }
+
+            int rowsEnd = chunk.length;
+            while (rowsEnd > 0 && chunk.data[rowsEnd - 1] != NEW_LINE) {
+                rowsEnd--;
+            }
+            if (rowsEnd == 0) {
+                throw new IOException("Row at offset " + chunk.offset +
+                        " is longer than " + bufferSize + " bytes");
+            }
+            readStage.busyNanos.add(System.nanoTime() - start);
+
+            Chunk next = readStage.take(freeChunks);
+            start = System.nanoTime();
+            next.length = chunk.length - rowsEnd;
+            next.offset = chunk.offset + rowsEnd;
+            System.arraycopy(chunk.data, rowsEnd, next.data, 0, next.length);
+            chunk.length = rowsEnd;
+            readStage.busyNanos.add(System.nanoTime() - start);
+
+            readStage.put(filledChunks, chunk);
+            chunk = next;
+        }
+
+        for (int i = 0; i < parserCount; i++) {
+            readStage.put(filledChunks, END_OF_CHUNKS);
+        }
+    }
+
+    /**
+     * Parser stage: parses every row of a chunk into a batch and recycles the chunk
+     */
+    private void parse(BlockingQueue<Chunk> freeChunks, BlockingQueue<Chunk> filledChunks,
+                       BlockingQueue<Batch> freeBatches, BlockingQueue<Batch> parsedBatches,
+                       ConcurrentMap<String, String> strings)
+            throws IOException, ParseException, InterruptedException {
+
+        CsvRowParser parser = new CsvRowParser(false, strings);
+        while (true) {
+            Chunk chunk = parseStage.take(filledChunks);
+            if (chunk == END_OF_CHUNKS) {
+                parseStage.put(parsedBatches, END_OF_BATCHES);
+                return;
+            }
+            Batch batch = parseStage.take(freeBatches);
+
+            long start = System.nanoTime();
+            byte[] data = chunk.data;
+            int lineStart = 0;
+            while (lineStart < chunk.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < chunk.length && data[lineEnd] != NEW_LINE) {
+                    lineEnd++;
+                }
+                parser.parseRow(chunk.buffer, lineStart, lineEnd, chunk.offset, batch);
+                lineStart = lineEnd + 1;
+            }
+            batch.bytes = chunk.length;
+            parseStage.rows.add(batch.size);
+            parseStage.bytes.add(chunk.length);
+            parseStage.busyNanos.add(System.nanoTime() - start);
+
+            parseStage.put(freeChunks, chunk);
+            parseStage.put(parsedBatches, batch);
+        }
+    }
+
+    /**
+     * Aggregator stage: adds parsed batches to a new warehouse and recycles them
+     */
+    private Warehouse aggregate(BlockingQueue<Batch> freeBatches, BlockingQueue<Batch> parsedBatches,
+                                AtomicReference<Throwable> failure) throws IOException, ParseException {
+
+        Warehouse warehouse = new Warehouse();
+        int finishedParsers = 0;
+        try {
+            while (finishedParsers < parserCount) {
+                long waitStart = System.nanoTime();
+                Batch batch = parsedBatches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                aggregateStage.waitNanos.add(System.nanoTime() - waitStart);
+                if (batch == null) {
+                    rethrow(failure.get());
+                } else if (batch == END_OF_BATCHES) {
+                    finishedParsers++;
+                } else {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < batch.size; i++) {
+                        warehouse.addItem(batch.items[i], batch.quantities[i]);
+                    }
+                    aggregateStage.rows.add(batch.size);
+                    aggregateStage.bytes.add(batch.bytes);
+                    batch.size = 0;
+                    aggregateStage.busyNanos.add(System.nanoTime() - start);
+                    freeBatches.add(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading was interrupted");
+        }
+        // a stage may fail after parsers finished, e.g. the reader
+        rethrow(failure.get());
+        return warehouse;
+    }
+
+    /**
+     * Rethrows failure of a stage as the exception type load declares
+     */
+    private static void rethrow(Throwable failure) throws IOException, ParseException {
+
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof ParseException) {
+            throw (ParseException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
+}
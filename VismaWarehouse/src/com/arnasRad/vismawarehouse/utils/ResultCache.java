@@ -0,0 +1,210 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Least recently used cache of formatted query results.
+ * Results are keyed by query type and query parameter. Cache size is the
+ * total length of cached results, so a few huge reports cannot hold more
+ * memory than many small ones; results longer than the capacity are not cached.
+ *
+ * Cache is versioned: invalidate only increments the version, which makes every
+ * cached result stale in O(1). Stale results are dropped when they are looked up
+ * or evicted. Results computed while the version changes are not cached.
+ *
+ * Instances are thread-safe; results are computed outside the cache lock, so
+ * equal queries missing at the same time may be computed more than once.
+ */
+public class ResultCache {
+
+    private final long capacity;
+    private final AtomicLong version = new AtomicLong();
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Cache key: query type and its parameter
+     */
+    private static final class Key {
+
+        private final String query;
+        private final Object parameter;
+
+        Key(String query, Object parameter) {
+            this.query = query;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) obj;
+            return query.equals(key.query) && Objects.equals(parameter, key.parameter);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * query.hashCode() + Objects.hashCode(parameter);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String result;
+        private final long version;
+
+        Entry(String result, long version) {
+            this.result = result;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param capacity maximum total length of cached results in characters
+     */
+    public ResultCache(long capacity) {
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets a cached result or computes and caches it
+     * @param query query type
+     * @param parameter query parameter; must have value-based equals and hashCode
+     * @param compute computes the result if it is not cached or is stale
+     * @return query result
+     */
+    public String get(String query, Object parameter, Supplier<String> compute) {
+
+        Key key = new Key(query, parameter);
+        long currentVersion = version.get();
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == currentVersion) {
+                hitCount++;
+                return entry.result;
+            }
+            if (entry != null) {
+                remove(key, entry);
+            }
+            missCount++;
+        }
+
+        String result = compute.get();
+        if (result.length() > capacity) {
+            return result;
+        }
+
+        synchronized (this) {
+            if (version.get() != currentVersion) {
+                return result;
+            }
+
+            Entry previous = entries.put(key, new Entry(result, currentVersion));
+            size += result.length();
+            if (previous != null) {
+                size -= previous.result.length();
+            }
+
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (size > capacity) {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                size -= evicted.result.length();
+                evictionCount++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Makes all cached results stale.
+     * Called after every modification of the data results are computed from
+     */
+    public void invalidate() {
+
+        version.incrementAndGet();
+    }
+
+    /**
+     * Getter
+     * @return number of lookups answered from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Getter
+     * @return number of lookups that computed the result
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Getter
+     * @return number of results evicted to stay within capacity
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Getter
+     * @return share of lookups answered from the cache, 0 to 1
+     */
+    public synchronized double getHitRate() {
+
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * Getter
+     * @return total length of cached results in characters
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter
+     * @return maximum total length of cached results in characters
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Overrided method
+     * @return cache statistics
+     */
+    @Override
+    public synchronized String toString() {
+        return "Hits: " + hitCount +
+                ", Misses: " + missCount +
+                ", Hit rate: " + String.format("%.1f%%", getHitRate() * 100) +
+                ", Evictions: " + evictionCount +
+                ", Size: " + size + "/" + capacity;
+    }
+
+    private void remove(Key key, Entry entry) {
+
+        entries.remove(key);
+        size -= entry.result.length();
+    }
+}
@@ -1,15 +1,36 @@
 package com.arnasRad.vismawarehouse.utils;
 
+import com.arnasRad.vismawarehouse.model.GroupAggregate;
 import com.arnasRad.vismawarehouse.model.Item;
 import com.arnasRad.vismawarehouse.model.Warehouse;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.text.DateFormat;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Utilities {
 
@@ -25,7 +46,11 @@ public class Utilities {
 
     private final static Scanner scanner = new Scanner(System.in);
     private final static String CSV_DELIMITER = ","; // delimiter for .csv input files
-    public final static DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    private final static int OUTPUT_BUFFER_SIZE = 1 << 16;
+    private final static int REPORT_LINE_CAPACITY = 128;
+    private final static int MAX_FILE_READERS = 32;
+    private final static int SHARDS_PER_PROCESSOR = 4;
+    private final static String GLOB_CHARACTERS = "*?[{";
 
     /**
      * Reads data from input .csv file specified by parameter fileName,
@@ -37,9 +62,15 @@ public class Utilities {
     public static Warehouse loadWarehouseItems(String fileName)
             throws IOException, ParseException {
 
+        long start = Metrics.startTimer();
+        long rows = 0;
+        long bytes = 0;
         Warehouse warehouse = new Warehouse();
+        // names and codes of this load; rows of the same item share the same Strings
+        HashMap<String, String> strings = new HashMap<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+        try (FileInputStream input = new FileInputStream(fileName);
+             BufferedReader br = new BufferedReader(new InputStreamReader(input))) {
 
             String line;
 
@@ -51,20 +82,565 @@ public class Utilities {
                 String name = item[Indexes.NAME_INDEX];
                 String code = item[Indexes.CODE_INDEX];
                 long quantity = Long.parseLong(item[Indexes.QUANTITY_INDEX]);
-                Date expirationDate = DATE_FORMAT.parse(item[Indexes.EXP_DATE_INDEX]);
+                int expirationDay = DateUtilities.parseEpochDay(item[Indexes.EXP_DATE_INDEX]);
 
                 if (quantity <= 0) {
                     throw new IOException("Negative value specified for item" +
                             ". Name: " + name +
                             ", code: " + code);
                 }
-                warehouse.addItem(new Item(code, name, expirationDate), quantity);
+                warehouse.addItem(new Item(getShared(strings, code), getShared(strings, name),
+                        expirationDay), quantity);
+                rows++;
             }
+            // encoded size of everything read, line breaks and the header row included
+            bytes = input.getChannel().position();
         }
 
+        Metrics.recordParse(rows, bytes, start);
+        Metrics.LOAD.recordSince(start);
         return warehouse;
     }
 
+    /**
+     * Reads data from input .csv file specified by parameter fileName
+     * through a memory-mapped file channel and returns Warehouse object.
+     * Produces the same Warehouse as loadWarehouseItems, but parses rows
+     * straight from file bytes, which is considerably faster on large files.
+     *
+     * @param fileName name of input file to load data from
+     * @return Warehouse object that contains distinct items
+     */
+    public static Warehouse loadWarehouseItemsMapped(String fileName)
+            throws IOException, ParseException {
+
+        long start = Metrics.startTimer();
+        Warehouse warehouse = new Warehouse();
+        readMapped(Paths.get(fileName), warehouse, null);
+        Metrics.LOAD.recordSince(start);
+        return warehouse;
+    }
+
+    /**
+     * Gets the instance of a name or code that was seen first during a load
+     */
+    private static String getShared(Map<String, String> strings, String value) {
+
+        String shared = strings.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    /**
+     * Parses all rows of a .csv file through a memory-mapped file channel
+     *
+     * @param file          file to read
+     * @param warehouse     warehouse parsed items are added to
+     * @param sharedStrings names and codes shared with readers of other files; null if not shared
+     */
+    private static void readMapped(Path file, Warehouse warehouse, ConcurrentMap<String, String> sharedStrings)
+            throws IOException, ParseException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedCsvReader reader = new MappedCsvReader(channel, false, sharedStrings);
+            reader.read(reader.getFirstRowOffset(), channel.size(), warehouse);
+        }
+    }
+
+    /**
+     * Parses rows located in the first size bytes of a .csv file.
+     * Rows appended after size are left for applyWarehouseTail.
+     *
+     * @param file      file to read
+     * @param warehouse warehouse parsed items are added to
+     * @param size      file size read before loading started
+     * @throws IOException thrown if the file cannot be read or became shorter than size
+     */
+    private static void readMapped(Path file, Warehouse warehouse, long size)
+            throws IOException, ParseException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < size) {
+                throw new IOException("File " + file + " was truncated while it was read");
+            }
+
+            MappedCsvReader reader = new MappedCsvReader(channel);
+            reader.read(Math.min(reader.getFirstRowOffset(), size), size, warehouse);
+        }
+    }
+
+    /**
+     * Checks whether a file name refers to a set of .csv files:
+     * a directory or a glob pattern such as "exports/site*.csv"
+     *
+     * @param location file name, directory or glob pattern
+     * @return true if location should be resolved with getCsvFiles
+     */
+    public static boolean isFileSet(String location) {
+
+        // glob characters are not valid in Windows paths, so they are checked
+        // after the existing file, which may have "[" or "{" in its name
+        try {
+            Path path = Paths.get(location);
+            if (Files.isRegularFile(path)) {
+                return false;
+            }
+            if (Files.isDirectory(path)) {
+                return true;
+            }
+        } catch (InvalidPathException e) {
+            // not a path, but may still be a glob
+        }
+        return isGlob(location);
+    }
+
+    /**
+     * Gets .csv files of a directory or files matching a glob pattern.
+     * Pattern may only be used in the file name, e.g. "exports/site*.csv"
+     *
+     * @param location directory (all its .csv files are used) or glob pattern
+     * @return matching files sorted by name
+     * @throws IOException thrown if directory cannot be read or no files match
+     */
+    public static List<Path> getCsvFiles(String location) throws IOException {
+
+        Path directory;
+        String glob;
+        if (isGlob(location)) {
+            int directoryLength = getDirectoryLength(location);
+            directory = Paths.get(directoryLength == 0 ? "." : location.substring(0, directoryLength));
+            glob = location.substring(directoryLength);
+        } else {
+            directory = Paths.get(location);
+            glob = "*.csv";
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("No .csv files match " + location);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Checks whether the file name part of a location contains glob pattern characters
+     */
+    private static boolean isGlob(String location) {
+
+        for (int i = getDirectoryLength(location); i < location.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(location.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets length of the directory part of a file name, including the last separator
+     */
+    private static int getDirectoryLength(String location) {
+
+        return Math.max(location.lastIndexOf('/'), location.lastIndexOf(File.separatorChar)) + 1;
+    }
+
+    /**
+     * Loads every .csv file of a directory or files matching a glob pattern
+     * into a single Warehouse.
+     *
+     * @param location directory or glob pattern, see getCsvFiles
+     * @return Warehouse object that contains distinct items of all files
+     * @see #loadWarehouseItemsFiles(List)
+     */
+    public static Warehouse loadWarehouseItemsFiles(String location)
+            throws IOException, ParseException {
+
+        return loadWarehouseItemsFiles(getCsvFiles(location));
+    }
+
+    /**
+     * Loads several .csv files into a single Warehouse.
+     * Every file is read by its own thread (up to MAX_FILE_READERS at a time),
+     * so reading and parsing of different files overlap. All threads add items
+     * straight into one sharded warehouse (see Warehouse.createSharded), whose
+     * shards are locked separately, so there is no merge step after the files
+     * are read and the whole load takes about as long as the largest file.
+     * Quantities of equal items are summed the same way as in addItem.
+     *
+     * @param files files to load
+     * @return sharded Warehouse object that contains distinct items of all files
+     */
+    public static Warehouse loadWarehouseItemsFiles(List<Path> files)
+            throws IOException, ParseException {
+
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No files to load");
+        }
+        long start = Metrics.startTimer();
+
+        // several shards per reader keep readers from waiting for each other's shard locks
+        Warehouse warehouse = Warehouse.createSharded(
+                Runtime.getRuntime().availableProcessors() * SHARDS_PER_PROCESSOR);
+        ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), MAX_FILE_READERS));
+        try {
+            List<Future<Path>> readers = new ArrayList<>(files.size());
+            for (Path file : files) {
+                readers.add(executor.submit(() -> {
+                    readMapped(file, warehouse, strings);
+                    return file;
+                }));
+            }
+            for (Future<Path> reader : readers) {
+                getResult(reader);
+            }
+            Metrics.LOAD.recordSince(start);
+            return warehouse;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads warehouse from a binary snapshot saved next to the .csv file.
+     * If the snapshot is missing, was made from another version of the file
+     * or fails checksum validation, items are loaded from the .csv file and
+     * a new snapshot is saved for the next load.
+     * Warehouse restored from a snapshot uses columnar item storage.
+     * Snapshots are only used when requested (see --snapshot option),
+     * other loaders never read or write them. Log of the file is replayed
+     * like in loadWarehouse.
+     *
+     * @param fileName name of input file to load data from
+     * @return Warehouse object that contains distinct items
+     * @throws IOException thrown if the file cannot be read or the snapshot
+     * cannot be read or saved
+     * @see #loadWarehouse(String, boolean)
+     */
+    public static Warehouse loadWarehouseItemsCached(String fileName)
+            throws IOException, ParseException {
+
+        return loadWarehouse(fileName, true).getWarehouse();
+    }
+
+    /**
+     * Loads warehouse from a .csv file, replays its log (see WarehouseLog)
+     * and reports how much of the file was loaded. Every loader of a single
+     * file that should see logged mutations goes through this method.
+     *
+     * Base of the warehouse is the checkpoint of the log if there is one,
+     * otherwise rows of the file (or its snapshot) up to the size recorded
+     * in the log header, or the whole file if there is no log. Log records,
+     * including rows appended to the file that were logged when applied,
+     * are replayed onto the base and rows appended after the logged ones
+     * are applied last, as quantity adjustments like in applyWarehouseTail.
+     * Rows are read up to the file size observed before loading, so rows
+     * appended during the load are not lost: they follow the returned size
+     * and are picked up by applyWarehouseTail.
+     *
+     * @param fileName name of input file to load data from
+     * @param snapshot true to restore rows of the file from its snapshot
+     *                 (saving a new one if it is stale), see WarehouseSnapshot
+     * @return loaded warehouse and the number of bytes of the file it contains rows of
+     * @throws IOException thrown if the file, snapshot or log cannot be read,
+     * the snapshot cannot be saved or the log belongs to another version of the file
+     */
+    public static LoadedWarehouse loadWarehouse(String fileName, boolean snapshot)
+            throws IOException, ParseException {
+
+        long start = Metrics.startTimer();
+        Path source = Paths.get(fileName);
+        Path logPath = WarehouseLog.getLogPath(fileName);
+        // read before loading, so changes made during the load make the snapshot stale
+        FileVersion version = FileVersion.read(source);
+
+        WarehouseLog.Header header = WarehouseLog.readHeader(logPath);
+        Warehouse warehouse;
+        long baseSize;
+        long logSize = 0;
+        long logSourceSize;
+
+        if (header == null) {
+            baseSize = version.getSize();
+            warehouse = loadBase(fileName, version, snapshot);
+        } else {
+            if (header.getSourceSize() > version.getSize() || !header.isSourceOf(source)) {
+                throw new IOException("Log " + logPath + " belongs to another version of " + fileName);
+            }
+            baseSize = header.getSourceSize();
+            if (header.hasCheckpoint()) {
+                Path checkpoint = WarehouseLog.getCheckpointPath(fileName, header.getCheckpoint());
+                warehouse = WarehouseSnapshot.load(checkpoint, header.getCheckpoint());
+                if (warehouse == null) {
+                    throw new IOException("Checkpoint " + checkpoint + " of log " + logPath +
+                            " is missing or damaged");
+                }
+            } else if (baseSize == version.getSize()) {
+                warehouse = loadBase(fileName, version, snapshot);
+            } else {
+                warehouse = new Warehouse();
+                readMapped(source, warehouse, baseSize);
+            }
+            WarehouseLog.Replay replay = WarehouseLog.replay(logPath, warehouse, header);
+            if (replay.getSourceSize() > version.getSize()) {
+                throw new IOException("Log " + logPath + " belongs to another version of " + fileName);
+            }
+            logSize = replay.getLogSize();
+            baseSize = replay.getSourceSize();
+        }
+        logSourceSize = baseSize;
+
+        if (baseSize < version.getSize()) {
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                new MappedCsvReader(channel, true).read(baseSize, version.getSize(), warehouse);
+            }
+        }
+
+        Metrics.LOAD.recordSince(start);
+        return new LoadedWarehouse(warehouse, version.getSize(), header, logSize, logSourceSize);
+    }
+
+    /**
+     * Loads all rows of the file observed in version, through the snapshot if requested
+     */
+    private static Warehouse loadBase(String fileName, FileVersion version, boolean snapshot)
+            throws IOException, ParseException {
+
+        Path snapshotPath = WarehouseSnapshot.getSnapshotPath(fileName);
+        Warehouse warehouse = snapshot ? WarehouseSnapshot.load(snapshotPath, version) : null;
+        if (warehouse == null) {
+            warehouse = new Warehouse();
+            readMapped(Paths.get(fileName), warehouse, version.getSize());
+            if (snapshot) {
+                WarehouseSnapshot.save(warehouse, snapshotPath, version);
+            }
+        }
+        return warehouse;
+    }
+
+    /**
+     * Applies a delta .csv file to an existing warehouse.
+     * Delta file has the same format as input files, but each row is a quantity
+     * adjustment: positive quantities are added to the item total and negative
+     * ones subtracted from it, removing the item once nothing is left.
+     * Only the delta rows are read, so cost does not depend on warehouse size.
+     *
+     * @param warehouse warehouse to update
+     * @param fileName  name of delta file to apply
+     */
+    public static void applyWarehouseDelta(Warehouse warehouse, String fileName)
+            throws IOException, ParseException {
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+
+            MappedCsvReader reader = new MappedCsvReader(channel, true);
+            reader.read(reader.getFirstRowOffset(), channel.size(), warehouse);
+        }
+    }
+
+    /**
+     * Applies a delta .csv file through a write-ahead log, so adjustments
+     * survive a restart. All rows of the file share a single log sync.
+     *
+     * @param log      log of the warehouse to update
+     * @param fileName name of delta file to apply
+     * @see #applyWarehouseDelta(Warehouse, String)
+     */
+    public static void applyWarehouseDelta(WarehouseLog log, String fileName)
+            throws IOException, ParseException {
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+
+            MappedCsvReader reader = new MappedCsvReader(channel, true);
+            reader.read(reader.getFirstRowOffset(), channel.size(), log::adjustItem);
+        } finally {
+            log.sync();
+        }
+    }
+
+    /**
+     * Applies rows appended to a growing .csv file since it was last read.
+     * Rows are applied as quantity adjustments, like in applyWarehouseDelta.
+     * A trailing row without a line break may still be being written,
+     * so it is left for the next call.
+     *
+     * @param warehouse warehouse to update
+     * @param fileName  name of input file to read new rows from
+     * @param offset    offset returned by the previous call, or
+     *                  LoadedWarehouse.getSourceSize(); 0 reads all rows
+     * @return offset to pass to the next call
+     * @throws IOException thrown if the file cannot be read or is shorter than offset
+     */
+    public static long applyWarehouseTail(Warehouse warehouse, String fileName, long offset)
+            throws IOException, ParseException {
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+
+            if (offset > channel.size()) {
+                throw new IOException("File " + fileName + " was truncated after it was read");
+            }
+
+            MappedCsvReader reader = new MappedCsvReader(channel, true);
+            long start = offset == 0 ? reader.getFirstRowOffset() : offset;
+            long end = reader.getCompleteRowsEnd(start);
+            reader.read(start, end, warehouse);
+            return end;
+        }
+    }
+
+    /**
+     * Applies rows appended to a growing .csv file through a write-ahead log,
+     * so reloads apply them in the same order relative to other logged
+     * mutations. Rows are read from the size the log already includes
+     * and share a single log sync. Calls for the same log must not overlap.
+     *
+     * @param log      log of the warehouse to update
+     * @param fileName name of input file to read new rows from
+     * @return offset of the file after the applied rows
+     * @throws IOException thrown if the file cannot be read or is shorter
+     * than the size the log includes, or the log could not be written
+     * @see #applyWarehouseTail(Warehouse, String, long)
+     * @see WarehouseLog#applyRows(List, long)
+     */
+    public static long applyWarehouseTail(WarehouseLog log, String fileName)
+            throws IOException, ParseException {
+
+        List<Map.Entry<Item, Long>> rows = new ArrayList<>();
+        long end;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+
+            long offset = log.getSourceSize();
+            if (offset > channel.size()) {
+                throw new IOException("File " + fileName + " was truncated after it was read");
+            }
+
+            MappedCsvReader reader = new MappedCsvReader(channel, true);
+            end = reader.getCompleteRowsEnd(offset);
+            reader.read(offset, end,
+                    (item, quantity) -> rows.add(new AbstractMap.SimpleImmutableEntry<>(item, quantity)));
+        }
+
+        if (end > log.getSourceSize()) {
+            log.applyRows(rows, end);
+            log.sync();
+        }
+        return end;
+    }
+
+    /**
+     * Reads data from input .csv file using all available processors.
+     *
+     * @param fileName name of input file to load data from
+     * @return Warehouse object that contains distinct items
+     * @see #loadWarehouseItemsParallel(String, int)
+     */
+    public static Warehouse loadWarehouseItemsParallel(String fileName)
+            throws IOException, ParseException {
+
+        return loadWarehouseItemsParallel(fileName,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads data from input .csv file in parallel and returns Warehouse object.
+     * File is split at row boundaries into threadCount chunks. Each chunk is
+     * parsed on its own thread into a partial Warehouse and partial results are
+     * merged in file order, so item quantities equal those of loadWarehouseItems.
+     *
+     * @param fileName name of input file to load data from
+     * @param threadCount number of chunks (and worker threads) to use
+     * @return Warehouse object that contains distinct items
+     */
+    public static Warehouse loadWarehouseItemsParallel(String fileName, int threadCount)
+            throws IOException, ParseException {
+
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        long timer = Metrics.startTimer();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+
+            MappedCsvReader headerReader = new MappedCsvReader(channel);
+            long start = headerReader.getFirstRowOffset();
+            long size = channel.size();
+
+            // chunk i spans [bounds[i], bounds[i + 1])
+            long[] bounds = new long[threadCount + 1];
+            bounds[0] = start;
+            bounds[threadCount] = size;
+            for (int i = 1; i < threadCount; i++) {
+                bounds[i] = Math.max(bounds[i - 1], headerReader.getNextRowOffset(
+                        start + (size - start) * i / threadCount));
+            }
+
+            ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            try {
+                List<Future<Warehouse>> partials = new ArrayList<>(threadCount);
+                for (int i = 0; i < threadCount; i++) {
+                    long chunkStart = bounds[i];
+                    long chunkEnd = bounds[i + 1];
+                    partials.add(executor.submit(() -> {
+                        Warehouse partial = new Warehouse();
+                        new MappedCsvReader(channel, false, strings).read(chunkStart, chunkEnd, partial);
+                        return partial;
+                    }));
+                }
+
+                Warehouse warehouse = new Warehouse();
+                for (Future<Warehouse> partial : partials) {
+                    warehouse.addItems(getResult(partial));
+                }
+                Metrics.LOAD.recordSince(timer);
+                return warehouse;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Waits for loading task to finish and rethrows its failure as
+     * the exception type the loader methods declare
+     *
+     * @param future loading task result
+     * @param <T> type of the task result
+     * @return task result
+     */
+    static <T> T getResult(Future<T> future) throws IOException, ParseException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     /**
      * Gets a sorted items map String
      * Items are sorted firstly by name, then code and lastly by expiration date
@@ -75,6 +651,7 @@ public class Utilities {
      */
     public static String getItemMapString(LinkedHashMap<Item, Long> map, String caption) {
 
+        long start = Metrics.startTimer();
         StringBuilder sb = new StringBuilder();
 
         sb.append("\n").append(caption).append(":\n");
@@ -92,9 +669,202 @@ public class Utilities {
                         .append(e.getValue())
                         .append("\n"));
 
+        Metrics.RENDER.recordSince(start);
         return sb.toString();
     }
 
+    /**
+     * Writes a sorted items list to a writer.
+     * Produces the same text as printing getItemMapString with println,
+     * but entries are written
+     * as soon as they are formatted through a single reused buffer, so the
+     * whole report is never held in memory. Caption is flushed before items
+     * are sorted, so the first line appears immediately.
+     *
+     * @param map     items list
+     * @param caption caption that goes before item list
+     * @param writer  writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if writing fails
+     */
+    public static void writeItemMap(Map<Item, Long> map, String caption, Writer writer)
+            throws IOException {
+
+        long start = Metrics.startTimer();
+        writer.write("\n");
+        writer.write(caption);
+        writer.write(":\n");
+
+        if (map.size() == 0) {
+            writer.write("There are no such items in warehouse.");
+            writer.write(System.lineSeparator());
+            writer.flush();
+            return;
+        }
+        writer.flush();
+
+        // sorting entry references only; entries are formatted one at a time
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map.Entry<Item, Long>[] entries = map.entrySet().toArray(new Map.Entry[0]);
+        Arrays.sort(entries, Map.Entry.comparingByKey());
+        writeItemEntries(Arrays.asList(entries), writer, start);
+    }
+
+    /**
+     * Writes items to specified writer in map iteration order.
+     * Used for results that are already ordered, e.g. top items or item pages
+     *
+     * @param map items and their quantities, in the order they are written
+     * @param caption caption that goes before item list
+     * @param writer writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if writing fails
+     */
+    public static void writeItemList(Map<Item, Long> map, String caption, Writer writer)
+            throws IOException {
+
+        long start = Metrics.startTimer();
+        writer.write("\n");
+        writer.write(caption);
+        writer.write(":\n");
+
+        if (map.size() == 0) {
+            writer.write("There are no such items in warehouse.");
+            writer.write(System.lineSeparator());
+            writer.flush();
+            return;
+        }
+        writer.flush();
+
+        writeItemEntries(map.entrySet(), writer, start);
+    }
+
+    private static void writeItemEntries(Collection<Map.Entry<Item, Long>> entries, Writer writer,
+                                         long start) throws IOException {
+
+        StringBuilder sb = new StringBuilder(REPORT_LINE_CAPACITY);
+        for (Map.Entry<Item, Long> entry : entries) {
+            writer.append(formatEntry(sb, entry.getKey(), entry.getValue()));
+        }
+        writer.write(System.lineSeparator());
+        writer.flush();
+        Metrics.RENDER.recordSince(start);
+    }
+
+    /**
+     * Formats a report line into a reused buffer
+     *
+     * @return buffer holding the line
+     */
+    private static StringBuilder formatEntry(StringBuilder sb, Item item, long quantity) {
+
+        sb.setLength(0);
+        return item.appendTo(sb)
+                .append(", Quantity: ")
+                .append(quantity)
+                .append('\n');
+    }
+
+    /**
+     * Writes a sorted list of all items of a .csv file (or of a directory or
+     * glob pattern of files, see getCsvFiles) to a writer without
+     * loading a Warehouse. Items are sorted with an external merge sort
+     * (see ExternalItemSorter), so the report needs about memoryBudget bytes
+     * of heap regardless of the number of distinct items in the file.
+     * Produces the same text as writeItemMap of the loaded warehouse items.
+     *
+     * @param fileName     name of input file, directory or glob pattern to load data from
+     * @param memoryBudget approximate heap size in bytes used for sorting
+     * @param caption      caption that goes before item list
+     * @param writer       writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if the file cannot be read, run files cannot be
+     *                     written or writing the report fails
+     */
+    public static void writeItemFileSorted(String fileName, long memoryBudget, String caption, Writer writer)
+            throws IOException, ParseException {
+
+        List<Path> files = isFileSet(fileName)
+                ? getCsvFiles(fileName)
+                : Collections.singletonList(Paths.get(fileName));
+
+        try (ExternalItemSorter sorter = new ExternalItemSorter(memoryBudget)) {
+
+            for (Path file : files) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MappedCsvReader reader = new MappedCsvReader(channel);
+                    reader.read(reader.getFirstRowOffset(), channel.size(), sorter);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+
+            long start = Metrics.startTimer();
+            writer.write("\n");
+            writer.write(caption);
+            writer.write(":\n");
+
+            if (sorter.isEmpty()) {
+                writer.write("There are no such items in warehouse.");
+                writer.write(System.lineSeparator());
+                writer.flush();
+                return;
+            }
+            writer.flush();
+
+            StringBuilder sb = new StringBuilder(REPORT_LINE_CAPACITY);
+            sorter.forEachSorted((item, quantity) -> {
+                try {
+                    writer.append(formatEntry(sb, item, quantity));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.write(System.lineSeparator());
+            writer.flush();
+            Metrics.RENDER.recordSince(start);
+        }
+    }
+
+    /**
+     * Writes group aggregates to specified writer, one group per line
+     *
+     * @param groups aggregates to write, in the order they are written
+     * @param caption report caption
+     * @param writer writer to write report to; it is flushed but not closed
+     * @throws IOException thrown if writing fails
+     */
+    public static void writeGroupAggregates(List<GroupAggregate> groups, String caption, Writer writer)
+            throws IOException {
+
+        writer.write("\n");
+        writer.write(caption);
+        writer.write(":\n");
+
+        if (groups.isEmpty()) {
+            writer.write("There are no such items in warehouse.");
+        }
+        for (GroupAggregate group : groups) {
+            writer.write(group.toString());
+            writer.write('\n');
+        }
+        writer.write(System.lineSeparator());
+        writer.flush();
+    }
+
+    /**
+     * Creates a buffered writer for console output.
+     * Closing the writer does not close System.out
+     *
+     * @return buffered writer of System.out
+     */
+    public static Writer getConsoleWriter() {
+
+        return new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
     /**
      * requests user integer input at bounds [start, end]
      * loops until user inputs an integer that satisfies bounds
@@ -194,33 +964,28 @@ public class Utilities {
     }
 
     /**
-     * Gets a Date object by specifying year, month and day of month
+     * Gets a LocalDate object by specifying year, month and day of month
      *
      * @param year       date value
      * @param month      date value
      * @param dayOfMonth date value
-     * @return Date object
+     * @return LocalDate object
      */
-    public static Date getDate(int year, int month, int dayOfMonth) {
+    public static LocalDate getDate(int year, int month, int dayOfMonth) {
 
-        try {
-            return DATE_FORMAT.parse(year + "-" + month + "-" + dayOfMonth);
-        } catch (ParseException e) {
-            System.out.println(e.getMessage());
-            return null;
-        }
+        return LocalDate.ofEpochDay(DateUtilities.getEpochDay(year, month, dayOfMonth));
     }
 
     /**
-     * Get date string formatted with default date formatter
+     * Get date string formatted as yyyy-MM-dd
      * @param date value to format string
      * @return String representing specified date
      */
-    public static String getDateString(Date date) {
-        return DATE_FORMAT.format(date);
+    public static String getDateString(LocalDate date) {
+        return DateUtilities.formatEpochDay((int) date.toEpochDay());
     }
 
-    public static Date getDateInput() {
+    public static LocalDate getDateInput() {
 
         int year = Utilities.getIntInputBounded(
                 1990, Integer.MAX_VALUE, "Enter year");
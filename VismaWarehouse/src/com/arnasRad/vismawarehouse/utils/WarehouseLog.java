@@ -0,0 +1,894 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of warehouse mutations.
+ * Every addItem, adjustItem and removeItem made through the log is applied
+ * to the warehouse and queued as a log record. A single writer thread appends
+ * queued records to the file and forces them to disk, so all records queued
+ * while the previous batch was being written share one fsync (group commit).
+ * Mutations become durable once sync returns.
+ *
+ * Log header records the base its records apply to: rows of the .csv file
+ * up to a size, identified by the size and a checksum of the bytes before it,
+ * or a checkpoint snapshot that includes those rows and earlier records.
+ * A log is refused if its .csv file was changed other than by appending rows.
+ * Utilities.loadWarehouse loads the base, replays the log and applies rows
+ * appended to the file after the base; open then continues the log.
+ * checkpoint saves the warehouse as a new base and empties the log.
+ * Each checkpoint is saved under its own name, <file>.checkpoint-<checksum>,
+ * and an empty log naming it replaces the log in one rename, so a crash at
+ * any point leaves either the old log and checkpoint or the new ones.
+ * Checkpoints the log does not name are deleted when it is opened.
+ *
+ * Rows appended to the .csv file are logged too once they are applied
+ * (applyRows, or open for rows applied by the load), as a group of row
+ * records committed by a record of the new file size. Reloads therefore
+ * apply rows in the same order relative to other mutations as they were
+ * applied live; Warehouse.adjustItem removes items that reach zero, so
+ * the order matters. Rows after the last committed size are read from
+ * the file again.
+ *
+ * Record format: payload length, payload (operation, epoch day, quantity,
+ * name and code) and CRC32 of the payload. A torn record or an uncommitted
+ * group of rows at the end of the log, left by a crash in the middle of
+ * a write, is ignored on load and discarded on open.
+ *
+ * All methods are thread-safe; mutations are applied in log order.
+ */
+public class WarehouseLog implements Closeable {
+
+    private static final byte ADD = 1;
+    private static final byte ADJUST = 2;
+    private static final byte REMOVE = 3;
+    private static final byte ROW = 4;      // adjustment of a .csv row, applied once committed
+    private static final byte SOURCE = 5;   // commits preceding rows; quantity is the new file size
+    private static final int MAX_STRING_SIZE = 0xFFFF;
+    private static final int MIN_PAYLOAD_SIZE = 1 + 4 + 8 + 2 + 2;
+    private static final int MAX_PAYLOAD_SIZE = MIN_PAYLOAD_SIZE + 2 * MAX_STRING_SIZE;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int MAGIC = 0x5657574C;   // "VWWL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final long NO_CHECKPOINT = -1;
+    // bytes before the end of the base rows checked to tell whether the .csv file was rewritten
+    private static final int SOURCE_CHECKSUM_SIZE = 4096;
+    private static final String FILE_EXTENSION = ".log";
+    private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+    private static final String NEW_CHECKPOINT_SUFFIX = ".new";
+
+    private final Warehouse warehouse;
+    private final String fileName;
+    private final Path source;
+    private final Thread writer;
+
+    // guards everything below
+    private final Object lock = new Object();
+    private FileChannel channel;     // replaced by checkpoint
+    private OutputStream output;
+    private RecordBuffer pending = new RecordBuffer();   // records waiting for the writer
+    private RecordBuffer writing = new RecordBuffer();   // batch being written; writer thread only
+    private long appendedCount;
+    private long durableCount;
+    private long sourceSize;     // rows of the .csv file before this size are logged or in the base
+    private IOException failure;
+    private boolean closed;
+
+    private WarehouseLog(Warehouse warehouse, FileChannel channel, String fileName, long sourceSize) {
+
+        this.warehouse = warehouse;
+        this.sourceSize = sourceSize;
+        this.channel = channel;
+        this.output = Channels.newOutputStream(channel);
+        this.fileName = fileName;
+        this.source = Paths.get(fileName);
+        this.writer = new Thread(this::writeBatches, "warehouse-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Gets default log file of a .csv file
+     *
+     * @param fileName name of the .csv file
+     * @return path of the log file, stored next to the .csv file
+     */
+    public static Path getLogPath(String fileName) {
+
+        return Paths.get(fileName + FILE_EXTENSION);
+    }
+
+    /**
+     * Gets checkpoint snapshot file of a .csv file
+     *
+     * @param fileName name of the .csv file
+     * @param checksum checksum of the checkpoint, recorded in the log header
+     * @return path of the checkpoint file, stored next to the .csv file
+     */
+    public static Path getCheckpointPath(String fileName, long checksum) {
+
+        return Paths.get(fileName + CHECKPOINT_EXTENSION + "-" + Long.toHexString(checksum));
+    }
+
+    /**
+     * Opens the log of a .csv file for appending new records.
+     * Warehouse must be loaded with Utilities.loadWarehouse, which already
+     * replayed the log; a log that does not exist yet is created with the
+     * loaded rows of the file as its base.
+     *
+     * @param fileName name of the .csv file the log belongs to
+     * @param loaded   warehouse loaded from the file
+     * @return opened log; mutations made through it are appended to the file
+     * @throws IOException thrown if the log cannot be opened for writing
+     * or was changed since the warehouse was loaded
+     */
+    public static WarehouseLog open(String fileName, LoadedWarehouse loaded) throws IOException {
+
+        Path path = getLogPath(fileName);
+        Header header = loaded.getLogHeader();
+        long validSize = loaded.getLogSize();
+        if (validSize == 0) {
+            if (header == null) {
+                header = Header.of(Paths.get(fileName), loaded.getSourceSize(), NO_CHECKPOINT);
+            }
+            create(path, header);
+            WarehouseSnapshot.forceDirectory(path);
+            validSize = HEADER_SIZE;
+        }
+        // checkpoints of a removed log, or left by a checkpoint interrupted by a crash
+        deleteCheckpoints(fileName, header.getCheckpoint());
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (!header.equals(readHeader(channel, path))) {
+                throw new IOException("Log " + path + " was changed after the warehouse was loaded");
+            }
+            // drop a torn record so new records follow the last valid one
+            channel.truncate(validSize);
+            channel.position(validSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        WarehouseLog log = new WarehouseLog(loaded.getWarehouse(), channel, fileName,
+                loaded.getLogSourceSize());
+        try {
+            if (loaded.getLogSourceSize() < loaded.getSourceSize()) {
+                // rows applied by the load after the log records
+                List<Map.Entry<Item, Long>> rows = readRows(Paths.get(fileName),
+                        loaded.getLogSourceSize(), loaded.getSourceSize());
+                log.appendRows(rows, loaded.getSourceSize(), false);
+                log.sync();
+            }
+            return log;
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads header of a log
+     *
+     * @param path log file
+     * @return log header; null if the log does not exist
+     * @throws IOException thrown if the log cannot be read or is not a warehouse log
+     */
+    static Header readHeader(Path path) throws IOException {
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel, path);
+        }
+    }
+
+    /**
+     * Applies every valid log record to the warehouse without changing the log
+     *
+     * @param path      log file
+     * @param warehouse base warehouse of the log
+     * @param header    header of the log
+     * @return size of the valid part of the log and of the .csv file rows it includes
+     * @throws IOException thrown if the log cannot be read
+     */
+    static Replay replay(Path path, Warehouse warehouse, Header header) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(HEADER_SIZE);
+            Replay replay = new Replay(header.getSourceSize());
+            replay.read(channel, warehouse);
+            return replay;
+        }
+    }
+
+    /**
+     * Getter
+     * @return warehouse the log applies mutations to
+     */
+    public Warehouse getWarehouse() {
+
+        return warehouse;
+    }
+
+    /**
+     * Adds item quantity to the warehouse and queues a log record of it
+     * @param item item to add
+     * @param quantity quantity to add
+     * @see Warehouse#addItem(Item, long)
+     */
+    public void addItem(Item item, long quantity) {
+
+        append(ADD, item, quantity);
+    }
+
+    /**
+     * Applies a quantity adjustment to the warehouse and queues a log record of it
+     * @param item item to adjust
+     * @param quantity quantity to add to (or, if negative, subtract from) item total
+     * @see Warehouse#adjustItem(Item, long)
+     */
+    public void adjustItem(Item item, long quantity) {
+
+        append(ADJUST, item, quantity);
+    }
+
+    /**
+     * Removes item from the warehouse and queues a log record of it
+     * @param item item to remove
+     * @see Warehouse#removeItem(Item)
+     */
+    public void removeItem(Item item) {
+
+        append(REMOVE, item, 0);
+    }
+
+    /**
+     * Applies rows appended to the .csv file as quantity adjustments and
+     * queues log records of them, committed together with the new file size.
+     * Rows must directly follow the rows already included, see getSourceSize.
+     * @param rows items and quantities of the rows in file order
+     * @param sourceSize offset of the file after the last row
+     * @see Warehouse#adjustItem(Item, long)
+     */
+    public void applyRows(List<Map.Entry<Item, Long>> rows, long sourceSize) {
+
+        appendRows(rows, sourceSize, true);
+    }
+
+    /**
+     * Getter
+     * @return number of bytes of the .csv file the warehouse contains rows of
+     */
+    public long getSourceSize() {
+
+        synchronized (lock) {
+            return sourceSize;
+        }
+    }
+
+    /**
+     * Waits until every mutation made through the log before this call
+     * is written and forced to disk
+     * @throws IOException thrown if the log could not be written
+     */
+    public void sync() throws IOException {
+
+        synchronized (lock) {
+            long target = appendedCount;
+            while (durableCount < target) {
+                if (failure != null) {
+                    throw failure;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Waiting for log write was interrupted");
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the warehouse, including every mutation made through the log,
+     * as a new checkpoint snapshot and empties the log, so later loads restore
+     * the checkpoint instead of loading the .csv file and replaying records.
+     * The new checkpoint is saved under its own name before an empty log
+     * naming it replaces the log; the previous checkpoint is deleted after.
+     * Mutations made through the log wait until the checkpoint is saved.
+     *
+     * @return path of the saved checkpoint
+     * @throws IOException thrown if the checkpoint or the log cannot be written
+     */
+    public Path checkpoint() throws IOException {
+
+        synchronized (lock) {
+            // appends wait for the lock, so the warehouse stops changing once the writer catches up
+            while (durableCount < appendedCount && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Waiting for log write was interrupted");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IllegalStateException("Log is closed");
+            }
+
+            FileVersion version = new FileVersion(sourceSize,
+                    Files.getLastModifiedTime(source).toMillis(), System.currentTimeMillis());
+            Path staged = Paths.get(fileName + CHECKPOINT_EXTENSION + NEW_CHECKPOINT_SUFFIX);
+            long checksum = WarehouseSnapshot.save(warehouse, staged, version);
+            Path checkpoint = getCheckpointPath(fileName, checksum);
+            Files.move(staged, checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            WarehouseSnapshot.forceDirectory(checkpoint);
+
+            // until this rename the old log and checkpoint stay the base
+            Path path = getLogPath(fileName);
+            create(path, Header.of(source, sourceSize, checksum));
+            try {
+                WarehouseSnapshot.forceDirectory(path);
+                FileChannel emptied = FileChannel.open(path, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                emptied.position(HEADER_SIZE);
+                FileChannel previous = channel;
+                channel = emptied;
+                output = Channels.newOutputStream(emptied);
+                previous.close();
+            } catch (IOException e) {
+                // records written to the replaced log would be lost
+                failure = e;
+                lock.notifyAll();
+                throw e;
+            }
+
+            deleteCheckpoints(fileName, checksum);
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Writes remaining records and closes the log file
+     * @throws IOException thrown if remaining records could not be written
+     */
+    @Override
+    public void close() throws IOException {
+
+        FileChannel current;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = channel;
+            lock.notifyAll();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Closing log was interrupted");
+        } finally {
+            current.close();
+        }
+
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void append(byte operation, Item item, long quantity) {
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Log is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException(failure);
+            }
+
+            // encode first, so a record that cannot be logged is not applied either
+            pending.writeRecord(operation, item, quantity);
+            apply(warehouse, operation, item, quantity);
+            appendedCount++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Queues row records and the record that commits them as one batch
+     * @param apply true to apply rows to the warehouse; false if they already are
+     */
+    private void appendRows(List<Map.Entry<Item, Long>> rows, long sourceSize, boolean apply) {
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Log is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException(failure);
+            }
+
+            // encode first, so rows that cannot be logged are not applied either
+            int start = pending.size();
+            try {
+                for (Map.Entry<Item, Long> row : rows) {
+                    pending.writeRecord(ROW, row.getKey(), row.getValue());
+                }
+            } catch (RuntimeException e) {
+                pending.truncate(start);
+                throw e;
+            }
+            pending.writeRecord(SOURCE, 0, sourceSize, "", "");
+
+            if (apply) {
+                for (Map.Entry<Item, Long> row : rows) {
+                    warehouse.adjustItem(row.getKey(), row.getValue());
+                }
+            }
+            this.sourceSize = sourceSize;
+            appendedCount++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Reads rows of a .csv file region [start, end) as quantity adjustments
+     */
+    private static List<Map.Entry<Item, Long>> readRows(Path source, long start, long end)
+            throws IOException {
+
+        List<Map.Entry<Item, Long>> rows = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            new MappedCsvReader(channel, true).read(start, end,
+                    (item, quantity) -> rows.add(new AbstractMap.SimpleImmutableEntry<>(item, quantity)));
+        } catch (ParseException e) {
+            throw new IOException("Row of " + source + " cannot be parsed again: " + e.getMessage(), e);
+        }
+        return rows;
+    }
+
+    /**
+     * Writer thread loop: takes all queued records as one batch,
+     * writes and forces them, then wakes up threads waiting in sync
+     */
+    private void writeBatches() {
+
+        while (true) {
+
+            long batchEnd;
+            FileChannel batchChannel;
+            OutputStream batchOutput;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // threads waiting in sync would otherwise wait forever
+                        failure = new InterruptedIOException("Log writer was interrupted");
+                        lock.notifyAll();
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return; // closed and nothing left to write
+                }
+
+                RecordBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                batchEnd = appendedCount;
+                batchChannel = channel;
+                batchOutput = output;
+            }
+
+            try {
+                writing.writeTo(batchOutput);
+                batchChannel.force(false);
+                writing.reset();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (lock) {
+                durableCount = batchEnd;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Creates an empty log; the log appears only once its header is written
+     */
+    private static void create(Path path, Header header) throws IOException {
+
+        Path temporary = Paths.get(path + ".tmp");
+        boolean created = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = header.encode();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            created = true;
+        } finally {
+            if (!created) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Deletes checkpoint files of a .csv file other than the one to keep,
+     * including one whose saving was interrupted
+     */
+    private static void deleteCheckpoints(String fileName, long keep) throws IOException {
+
+        Path file = Paths.get(fileName).toAbsolutePath();
+        String prefix = file.getFileName() + CHECKPOINT_EXTENSION;
+        Path kept = keep != NO_CHECKPOINT ? getCheckpointPath(fileName, keep).toAbsolutePath() : null;
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(file.getParent(),
+                entry -> entry.getFileName().toString().startsWith(prefix))) {
+            for (Path checkpoint : checkpoints) {
+                if (!checkpoint.equals(kept)) {
+                    Files.deleteIfExists(checkpoint);
+                }
+            }
+        }
+    }
+
+    private static Header readHeader(FileChannel channel, Path path) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer, buffer.position());
+        }
+        buffer.flip();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("File " + path + " is not a warehouse log");
+        }
+        return new Header(buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    private static String readString(ByteBuffer payload) {
+
+        if (payload.remaining() < 2) {
+            return null;
+        }
+        int length = payload.getShort() & MAX_STRING_SIZE;
+        if (payload.remaining() < length) {
+            return null;
+        }
+
+        String value = new String(payload.array(), payload.arrayOffset() + payload.position(),
+                length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    private static void apply(Warehouse warehouse, byte operation, Item item, long quantity) {
+
+        switch (operation) {
+            case ADD:
+                warehouse.addItem(item, quantity);
+                break;
+            case ADJUST:
+                warehouse.adjustItem(item, quantity);
+                break;
+            case REMOVE:
+                warehouse.removeItem(item);
+                break;
+        }
+    }
+
+    /**
+     * Replay of log records: applies records to the warehouse and keeps
+     * rows until the record that commits them
+     */
+    static final class Replay {
+
+        private final List<Item> rowItems = new ArrayList<>();
+        private final List<Long> rowQuantities = new ArrayList<>();
+        private long logSize = HEADER_SIZE;
+        private long sourceSize;
+
+        private Replay(long sourceSize) {
+            this.sourceSize = sourceSize;
+        }
+
+        /**
+         * Getter
+         * @return size of the valid part of the log, up to its last committed record
+         */
+        long getLogSize() {
+
+            return logSize;
+        }
+
+        /**
+         * Getter
+         * @return number of bytes of the .csv file whose rows are in the base or the log
+         */
+        long getSourceSize() {
+
+            return sourceSize;
+        }
+
+        /**
+         * Applies every valid record, starting at channel position, to the warehouse
+         */
+        private void read(FileChannel channel, Warehouse warehouse) throws IOException {
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel), READ_BUFFER_SIZE));
+            byte[] payload = new byte[MAX_PAYLOAD_SIZE];
+            CRC32 checksum = new CRC32();
+            long position = logSize;
+
+            while (true) {
+                try {
+                    int length = input.readInt();
+                    if (length < MIN_PAYLOAD_SIZE || length > MAX_PAYLOAD_SIZE) {
+                        break;
+                    }
+                    input.readFully(payload, 0, length);
+                    int storedChecksum = input.readInt();
+
+                    checksum.reset();
+                    checksum.update(payload, 0, length);
+                    if ((int) checksum.getValue() != storedChecksum ||
+                            !applyRecord(warehouse, ByteBuffer.wrap(payload, 0, length))) {
+                        break;
+                    }
+                    position += 4 + length + 4;
+                    if (rowItems.isEmpty()) {
+                        logSize = position;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Decodes a record payload and applies it to the warehouse
+         * @return false if the payload is not a valid record
+         */
+        private boolean applyRecord(Warehouse warehouse, ByteBuffer payload) {
+
+            byte operation = payload.get();
+            int expirationDay = payload.getInt();
+            long quantity = payload.getLong();
+            String name = readString(payload);
+            String code = name != null ? readString(payload) : null;
+            if (code == null || payload.hasRemaining() ||
+                    operation < ADD || operation > SOURCE) {
+                return false;
+            }
+
+            switch (operation) {
+                case ROW:
+                    rowItems.add(new Item(code, name, expirationDay));
+                    rowQuantities.add(quantity);
+                    return true;
+                case SOURCE:
+                    for (int i = 0; i < rowItems.size(); i++) {
+                        warehouse.adjustItem(rowItems.get(i), rowQuantities.get(i));
+                    }
+                    rowItems.clear();
+                    rowQuantities.clear();
+                    sourceSize = quantity;
+                    return true;
+                default:
+                    // rows are committed before any other record is appended
+                    if (!rowItems.isEmpty()) {
+                        return false;
+                    }
+                    apply(warehouse, operation, new Item(code, name, expirationDay), quantity);
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Log header: the base warehouse log records apply to
+     */
+    static final class Header {
+
+        // checksum of the checkpoint snapshot; NO_CHECKPOINT if the base is made of the .csv rows
+        private final long checkpoint;
+        // rows of the .csv file before this size are included in the base
+        private final long sourceSize;
+        // CRC32 of the last SOURCE_CHECKSUM_SIZE bytes before sourceSize
+        private final long sourceChecksum;
+
+        private Header(long checkpoint, long sourceSize, long sourceChecksum) {
+            this.checkpoint = checkpoint;
+            this.sourceSize = sourceSize;
+            this.sourceChecksum = sourceChecksum;
+        }
+
+        /**
+         * Creates header of a log whose base contains rows of the first
+         * sourceSize bytes of the .csv file
+         * @param checkpoint checksum of the checkpoint snapshot; NO_CHECKPOINT if there is none
+         */
+        static Header of(Path source, long sourceSize, long checkpoint) throws IOException {
+
+            return new Header(checkpoint, sourceSize, getSourceChecksum(source, sourceSize));
+        }
+
+        boolean hasCheckpoint() {
+
+            return checkpoint != NO_CHECKPOINT;
+        }
+
+        long getCheckpoint() {
+
+            return checkpoint;
+        }
+
+        long getSourceSize() {
+
+            return sourceSize;
+        }
+
+        /**
+         * Checks whether the .csv file still starts with the base rows,
+         * i.e. it was not changed other than by appending rows
+         */
+        boolean isSourceOf(Path source) throws IOException {
+
+            return Files.size(source) >= sourceSize &&
+                    getSourceChecksum(source, sourceSize) == sourceChecksum;
+        }
+
+        ByteBuffer encode() {
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(checkpoint);
+            buffer.putLong(sourceSize);
+            buffer.putLong(sourceChecksum);
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            if (obj == this) {
+                return true;
+            }
+
+            if (!(obj instanceof Header)) {
+                return false;
+            }
+
+            Header header = (Header) obj;
+            return checkpoint == header.checkpoint &&
+                    sourceSize == header.sourceSize &&
+                    sourceChecksum == header.sourceChecksum;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(checkpoint, sourceSize, sourceChecksum);
+        }
+
+        private static long getSourceChecksum(Path source, long size) throws IOException {
+
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                long start = Math.max(0, size - SOURCE_CHECKSUM_SIZE);
+                ByteBuffer buffer = ByteBuffer.allocate((int) (size - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        throw new IOException("File " + source + " is shorter than " + size + " bytes");
+                    }
+                }
+                CRC32 checksum = new CRC32();
+                checksum.update(buffer.array());
+                return checksum.getValue();
+            }
+        }
+    }
+
+    /**
+     * Growable byte buffer that encodes log records
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        private final CRC32 checksum = new CRC32();
+
+        void writeRecord(byte operation, Item item, long quantity) {
+
+            writeRecord(operation, item.getExpirationDay(), quantity, item.getName(), item.getCode());
+        }
+
+        void writeRecord(byte operation, int expirationDay, long quantity, String itemName, String itemCode) {
+
+            byte[] name = itemName.getBytes(StandardCharsets.UTF_8);
+            byte[] code = itemCode.getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_STRING_SIZE || code.length > MAX_STRING_SIZE) {
+                throw new IllegalArgumentException("Item name or code is too long to be logged");
+            }
+
+            int length = MIN_PAYLOAD_SIZE + name.length + code.length;
+            ByteBuffer record = ByteBuffer.allocate(4 + length + 4);
+            record.putInt(length);
+            record.put(operation);
+            record.putInt(expirationDay);
+            record.putLong(quantity);
+            record.putShort((short) name.length);
+            record.put(name);
+            record.putShort((short) code.length);
+            record.put(code);
+
+            checksum.reset();
+            checksum.update(record.array(), 4, length);
+            record.putInt((int) checksum.getValue());
+
+            write(record.array(), 0, record.position());
+        }
+
+        /**
+         * Drops bytes written after size
+         */
+        void truncate(int size) {
+
+            count = size;
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.Item;
+import com.arnasRad.vismawarehouse.model.ItemFilter;
+import com.arnasRad.vismawarehouse.model.ItemPage;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Embedded HTTP service answering warehouse queries with JSON.
+ * Built on the JDK's com.sun.net.httpserver, so it needs no libraries.
+ *
+ * GET /items                                    page of items
+ * GET /items/insufficient?quantity=n            page of items with quantity lower than n
+ * GET /items/expired?date=yyyy-MM-dd            page of items that expire by the date
+ * GET /items/soon-to-expire?date=yyyy-MM-dd     page of items that expire after the date
+ * GET /stats                                    response cache statistics
+ *
+ * Item lists are paged: limit=n sets the page size (DEFAULT_PAGE_SIZE items
+ * by default, MAX_PAGE_SIZE at most) and after=name,code,yyyy-MM-dd, taken
+ * from the next cursor of the previous page, starts the next page.
+ *
+ * Requests are handled by a fixed pool of threads, all reading the current
+ * warehouse at the same time without locking. Items of every served warehouse
+ * are sorted once and shared by all requests, so a page is found with a binary
+ * search and filtered pages scan sorted items only up to their end. Responses are kept in a ResultCache until the warehouse is replaced,
+ * so repeated dashboard queries are answered without filtering and formatting
+ * items again. Served warehouses therefore must not be modified; WarehouseWatcher
+ * suits this, as it publishes a new warehouse on every reload instead of
+ * modifying the served one.
+ */
+public class WarehouseServer implements Closeable {
+
+    public static final int DEFAULT_THREAD_COUNT = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+    public static final long DEFAULT_CACHE_CAPACITY = 16 * 1024 * 1024;
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int MAX_PAGE_SIZE = 10000;
+    private static final int BACKLOG = 1024;            // pending connections accepted by the socket
+    private static final int ITEM_JSON_CAPACITY = 128;  // typical length of a single item in JSON
+
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final Supplier<Warehouse> warehouse;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ResultCache cache;
+    private volatile Served served;
+    private long generation;
+
+    /**
+     * Currently served warehouse.
+     * Generation is part of every cache key, so responses of previously
+     * served warehouses are never returned and age out of the cache
+     */
+    private static final class Served {
+
+        private final Warehouse warehouse;
+        private final long generation;
+        private SortedItems sortedItems;
+
+        Served(Warehouse warehouse, long generation) {
+            this.warehouse = warehouse;
+            this.generation = generation;
+        }
+
+        /**
+         * Gets items of the warehouse sorted in Item.compareTo order.
+         * Items are sorted once for every served warehouse and are then
+         * shared by all requests, so pages are found with a binary search
+         */
+        synchronized SortedItems getSortedItems() {
+
+            if (sortedItems == null) {
+                sortedItems = new SortedItems(warehouse.getItems());
+            }
+            return sortedItems;
+        }
+    }
+
+    /**
+     * Items and their quantities in Item.compareTo order
+     */
+    private static final class SortedItems {
+
+        private final Item[] items;
+        private final long[] quantities;
+
+        SortedItems(Map<Item, Long> map) {
+
+            this.items = map.keySet().toArray(new Item[0]);
+            Arrays.sort(items);
+            this.quantities = new long[items.length];
+            for (int i = 0; i < items.length; i++) {
+                quantities[i] = map.get(items[i]);
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     * Starts serving with DEFAULT_THREAD_COUNT request threads
+     * @param port port to listen on; 0 picks a free port
+     * @param warehouse supplier of the warehouse to query, called on every request
+     * @throws IOException thrown if the port cannot be bound
+     */
+    public WarehouseServer(int port, Supplier<Warehouse> warehouse) throws IOException {
+
+        this(port, warehouse, DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * Constructor
+     * Starts serving with specified number of request threads
+     * @param port port to listen on; 0 picks a free port
+     * @param warehouse supplier of the warehouse to query, called on every request
+     * @param threadCount number of threads handling requests
+     * @throws IOException thrown if the port cannot be bound
+     */
+    public WarehouseServer(int port, Supplier<Warehouse> warehouse, int threadCount) throws IOException {
+
+        this(port, warehouse, threadCount, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     * Starts serving with specified number of request threads and response cache size
+     * @param port port to listen on; 0 picks a free port
+     * @param warehouse supplier of the warehouse to query, called on every request
+     * @param threadCount number of threads handling requests
+     * @param cacheCapacity maximum total length of cached responses in characters
+     * @throws IOException thrown if the port cannot be bound
+     */
+    public WarehouseServer(int port, Supplier<Warehouse> warehouse, int threadCount, long cacheCapacity)
+            throws IOException {
+
+        this.warehouse = warehouse;
+        this.cache = new ResultCache(cacheCapacity);
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "warehouse-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server.setExecutor(executor);
+        server.createContext("/items", this::handle);
+        server.createContext("/stats", this::handle);
+        server.start();
+    }
+
+    /**
+     * Enables TCP_NODELAY on connections of all com.sun.net.httpserver servers of the JVM.
+     * The JDK server writes response headers and body separately; without TCP_NODELAY
+     * the body waits for the client's delayed acknowledgement of the headers (~40 ms).
+     * The JDK reads the system property once, so this has to be called before the first
+     * server is created. Applications call it themselves, as it affects the whole JVM;
+     * a property set on the command line is left as it is
+     */
+    public static void enableNoDelay() {
+
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+    }
+
+    /**
+     * Getter
+     * @return port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Getter
+     * @return cache of responses, which provides hit and eviction statistics
+     */
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Stops accepting requests and stops request threads
+     */
+    @Override
+    public void close() {
+
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, getErrorJson("Only GET requests are supported"));
+                return;
+            }
+
+            Map<String, String> parameters = getParameters(exchange.getRequestURI().getRawQuery());
+            String path = exchange.getRequestURI().getPath();
+            Served current = getServed(warehouse.get());
+            String json;
+
+            switch (path) {
+                case "/items":
+                case "/items/":
+                    json = getPageJson("/items", "Items in Warehouse", current, parameters,
+                            null, ItemFilter.all());
+                    break;
+                case "/items/insufficient":
+                    long quantity = Long.parseLong(getParameter(parameters, "quantity"));
+                    json = getPageJson(path, "Items with insufficient quantities", current, parameters,
+                            quantity, ItemFilter.quantityBelow(quantity));
+                    break;
+                case "/items/expired":
+                    int expiredDay = getDay(parameters);
+                    json = getPageJson(path, "Items that are not expired by " +
+                                    DateUtilities.formatEpochDay(expiredDay), current, parameters,
+                            expiredDay, ItemFilter.expiresBy(expiredDay));
+                    break;
+                case "/items/soon-to-expire":
+                    int soonDay = getDay(parameters);
+                    json = getPageJson(path, "Items that are not expired by " +
+                                    DateUtilities.formatEpochDay(soonDay), current, parameters,
+                            soonDay, ItemFilter.expiresAfter(soonDay));
+                    break;
+                case "/stats":
+                    json = getStatsJson();
+                    break;
+                default:
+                    send(exchange, 404, getErrorJson("Unknown path: " + path));
+                    return;
+            }
+
+            send(exchange, 200, json);
+        } catch (IllegalArgumentException | ParseException e) {
+            send(exchange, 400, getErrorJson(e.getMessage()));
+        } catch (RuntimeException e) {
+            send(exchange, 500, getErrorJson(String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Gets a page of sorted items matching the filter.
+     * Parameter identifies the filter in cache keys
+     */
+    private String getPageJson(String path, String caption, Served current, Map<String, String> parameters,
+                               Object parameter, ItemFilter filter) throws ParseException {
+
+        // whole result is never rendered at once; clients follow the next cursor
+        String limit = parameters.get("limit");
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limit);
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ": " + pageSize);
+        }
+
+        String after = parameters.get("after");
+        Item cursor = after == null ? null : ItemPage.parseCursor(after);
+        return cache.get(path, Arrays.asList(current.generation, parameter, pageSize, cursor), () -> {
+            SortedItems sorted = current.getSortedItems();
+            int from = 0;
+            if (cursor != null) {
+                int index = Arrays.binarySearch(sorted.items, cursor);
+                from = index >= 0 ? index + 1 : -index - 1;
+            }
+
+            int[] rows = new int[Math.min(pageSize, sorted.items.length - from)];
+            int count = 0;
+            int i = from;
+            for (; i < sorted.items.length && count < rows.length; i++) {
+                if (filter.test(sorted.items[i], sorted.quantities[i])) {
+                    rows[count++] = i;
+                }
+            }
+            // next cursor is given only if another item matches after the page
+            while (i < sorted.items.length && !filter.test(sorted.items[i], sorted.quantities[i])) {
+                i++;
+            }
+            Item next = i < sorted.items.length ? sorted.items[rows[count - 1]] : null;
+            return getItemsJson(caption, sorted, rows, count, next);
+        });
+    }
+
+    private String getStatsJson() {
+
+        return "{\"cacheHits\":" + cache.getHitCount() +
+                ",\"cacheMisses\":" + cache.getMissCount() +
+                ",\"cacheHitRate\":" + cache.getHitRate() +
+                ",\"cacheEvictions\":" + cache.getEvictionCount() +
+                ",\"cacheSize\":" + cache.getSize() +
+                ",\"cacheCapacity\":" + cache.getCapacity() + "}";
+    }
+
+    /**
+     * Gets state of the warehouse, replacing the state of previously served warehouse
+     */
+    private Served getServed(Warehouse warehouse) {
+
+        Served current = served;
+        if (current != null && current.warehouse == warehouse) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = served;
+            if (current == null || current.warehouse != warehouse) {
+                current = new Served(warehouse, ++generation);
+                served = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Formats items at given rows of sorted items as a JSON object;
+     * items are sorted the same way as in console reports
+     */
+    private static String getItemsJson(String caption, SortedItems sorted, int[] rows, int count,
+                                       Item nextCursor) {
+
+        long start = Metrics.startTimer();
+        StringBuilder sb = new StringBuilder(64 + count * ITEM_JSON_CAPACITY);
+        sb.append("{\"caption\":");
+        appendJsonString(sb, caption);
+        sb.append(",\"count\":").append(count);
+        if (nextCursor != null) {
+            sb.append(",\"next\":");
+            appendJsonString(sb, ItemPage.formatCursor(nextCursor));
+        }
+        sb.append(",\"items\":[");
+        for (int r = 0; r < count; r++) {
+            int i = rows[r];
+            Item item = sorted.items[i];
+            if (r > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"name\":");
+            appendJsonString(sb, item.getName());
+            sb.append(",\"code\":");
+            appendJsonString(sb, item.getCode());
+            sb.append(",\"expirationDate\":\"");
+            DateUtilities.appendEpochDay(sb, item.getExpirationDay());
+            sb.append("\",\"quantity\":").append(sorted.quantities[i]).append('}');
+        }
+        String json = sb.append("]}").toString();
+        Metrics.RENDER.recordSince(start);
+        return json;
+    }
+
+    private static String getErrorJson(String message) {
+
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        appendJsonString(sb, message);
+        return sb.append('}').toString();
+    }
+
+    private static void appendJsonString(StringBuilder sb, String text) {
+
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static Map<String, String> getParameters(String query) {
+
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String getParameter(Map<String, String> parameters, String name) {
+
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int getDay(Map<String, String> parameters) throws ParseException {
+
+        return DateUtilities.parseEpochDay(getParameter(parameters, "date"));
+    }
+}
@@ -0,0 +1,431 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.ColumnarItemStorage;
+import com.arnasRad.vismawarehouse.model.Warehouse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary warehouse snapshot.
+ * Lets a warehouse loaded from a .csv file be reopened without parsing
+ * the file again. Checkpoints of a WarehouseLog use the same format and
+ * are identified by their checksum.
+ *
+ * File layout (big-endian):
+ * header   - magic, format version, source file size, modification time
+ *            and the time they were read, string count, record count
+ * strings  - dictionary of names and codes: byte length followed by UTF-8 bytes
+ * records  - fixed-width: name id, code id, epoch day (ints) and quantity (long)
+ * trailer  - CRC32 checksum of everything before it
+ */
+public class WarehouseSnapshot {
+
+    private static final int MAGIC = 0x5657534E;   // "VWSN"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 8;
+    private static final int RECORD_SIZE = 4 + 4 + 4 + 8;
+    private static final int TRAILER_SIZE = 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long MAX_WINDOW_SIZE = 1L << 30;
+    private static final String FILE_EXTENSION = ".snapshot";
+
+    /**
+     * Gets default snapshot file of a .csv file
+     *
+     * @param fileName name of the .csv file
+     * @return path of the snapshot file, stored next to the .csv file
+     */
+    public static Path getSnapshotPath(String fileName) {
+
+        return Paths.get(fileName + FILE_EXTENSION);
+    }
+
+    /**
+     * Saves warehouse items to a snapshot file.
+     * Snapshot is written to a temporary file first and then moved in place,
+     * so a failed save never leaves a partial snapshot behind; the temporary
+     * file is deleted if the save fails. Snapshot is forced to disk before it
+     * is moved and the move is forced after it, so a returned save survives
+     * a power loss.
+     *
+     * @param warehouse warehouse to save
+     * @param snapshot  snapshot file to write
+     * @param source    version of the .csv file read before warehouse was loaded from it
+     * @return checksum of the snapshot, which identifies it
+     * @throws IOException thrown if snapshot cannot be written
+     */
+    public static long save(Warehouse warehouse, Path snapshot, FileVersion source) throws IOException {
+
+        // string dictionary shared by names and codes
+        HashMap<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        warehouse.forEachItem((item, quantity) -> {
+            ids.computeIfAbsent(item.getName(), key -> { strings.add(key); return strings.size() - 1; });
+            ids.computeIfAbsent(item.getCode(), key -> { strings.add(key); return strings.size() - 1; });
+        });
+
+        Path temporary = Paths.get(snapshot + ".tmp");
+        long checksum;
+        boolean saved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+                ChecksumWriter writer = new ChecksumWriter(channel);
+
+                ByteBuffer buffer = writer.require(HEADER_SIZE);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(source.getSize());
+                buffer.putLong(source.getLastModified());
+                buffer.putLong(source.getReadTime());
+                buffer.putInt(strings.size());
+                buffer.putLong(warehouse.getItemCount());
+
+                for (String value : strings) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    writer.require(4).putInt(bytes.length);
+                    writer.write(bytes);
+                }
+
+                try {
+                    warehouse.forEachItem((item, quantity) -> {
+                        try {
+                            ByteBuffer record = writer.require(RECORD_SIZE);
+                            record.putInt(ids.get(item.getName()));
+                            record.putInt(ids.get(item.getCode()));
+                            record.putInt(item.getExpirationDay());
+                            record.putLong(quantity);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+
+                checksum = writer.finish();
+                channel.force(true);
+            }
+
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            saved = true;
+            forceDirectory(snapshot);
+        } finally {
+            if (!saved) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Forces the directory entry of a file to disk, e.g. after the file was
+     * created or moved into place
+     *
+     * @param file file whose directory is forced
+     * @throws IOException thrown if the directory cannot be forced
+     */
+    static void forceDirectory(Path file) throws IOException {
+
+        Path directory = file.toAbsolutePath().getParent();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // directories cannot be opened on Windows, where NTFS journals renames itself
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Opens a snapshot with memory-mapped reads.
+     * Records are restored straight into columnar storage columns,
+     * without creating an Item object per record.
+     *
+     * @param snapshot snapshot file to read
+     * @param source   current version of the .csv file the snapshot was made from
+     * @return restored Warehouse; null if snapshot does not exist, was made
+     * from another version of the source file, cannot tell whether the source
+     * file changed after it was made or fails checksum validation
+     * @throws IOException thrown if snapshot cannot be read
+     */
+    public static Warehouse load(Path snapshot, FileVersion source) throws IOException {
+
+        if (!Files.exists(snapshot)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                return null;
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            FileVersion saved = new FileVersion(header.getLong(), header.getLong(), header.getLong());
+            if (!saved.isSettled() || !saved.matches(source) || !isChecksumValid(channel, size)) {
+                return null;
+            }
+
+            return read(channel, size, header);
+        }
+    }
+
+    /**
+     * Opens a snapshot identified by its checksum, regardless of the
+     * version of the file it was made from
+     *
+     * @param snapshot snapshot file to read
+     * @param checksum checksum returned by save
+     * @return restored Warehouse; null if snapshot does not exist,
+     * is another snapshot or fails checksum validation
+     * @throws IOException thrown if snapshot cannot be read
+     */
+    public static Warehouse load(Path snapshot, long checksum) throws IOException {
+
+        if (getChecksum(snapshot) != checksum) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION ||
+                    !isChecksumValid(channel, size)) {
+                return null;
+            }
+
+            header.position(header.position() + 3 * 8); // source version
+            return read(channel, size, header);
+        }
+    }
+
+    /**
+     * Gets checksum stored in a snapshot without validating it
+     *
+     * @param snapshot snapshot file
+     * @return stored checksum; -1 if snapshot does not exist or is too short
+     * @throws IOException thrown if snapshot cannot be read
+     */
+    public static long getChecksum(Path snapshot) throws IOException {
+
+        if (!Files.exists(snapshot)) {
+            return -1;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                return -1;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE)
+                    .getLong();
+        }
+    }
+
+    /**
+     * Restores snapshot records into columnar storage
+     * @param header header positioned at string count
+     * @return restored Warehouse; null if records are invalid
+     */
+    private static Warehouse read(FileChannel channel, long size, ByteBuffer header)
+            throws IOException {
+
+        int stringCount = header.getInt();
+        long recordCount = header.getLong();
+
+        if (recordCount > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        MappedReader reader = new MappedReader(channel, HEADER_SIZE, size - TRAILER_SIZE);
+
+        List<String> strings = new ArrayList<>(stringCount);
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[reader.require(4).getInt()];
+            reader.read(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        int itemCount = (int) recordCount;
+        int[] nameIds = new int[itemCount];
+        int[] codeIds = new int[itemCount];
+        int[] expirationDays = new int[itemCount];
+        long[] quantities = new long[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            ByteBuffer record = reader.require(RECORD_SIZE);
+            nameIds[i] = record.getInt();
+            codeIds[i] = record.getInt();
+            expirationDays[i] = record.getInt();
+            quantities[i] = record.getLong();
+            if (nameIds[i] < 0 || nameIds[i] >= stringCount ||
+                    codeIds[i] < 0 || codeIds[i] >= stringCount) {
+                return null;
+            }
+        }
+
+        ColumnarItemStorage storage = new ColumnarItemStorage(strings, strings,
+                nameIds, codeIds, expirationDays, quantities, itemCount);
+        return new Warehouse(storage);
+    }
+
+    /**
+     * Computes CRC32 of snapshot contents and compares it with the stored one
+     */
+    private static boolean isChecksumValid(FileChannel channel, long size) throws IOException {
+
+        long contentSize = size - TRAILER_SIZE;
+        CRC32 checksum = new CRC32();
+        for (long position = 0; position < contentSize; position += MAX_WINDOW_SIZE) {
+            checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAX_WINDOW_SIZE, contentSize - position)));
+        }
+
+        long stored = channel.map(FileChannel.MapMode.READ_ONLY, contentSize, TRAILER_SIZE)
+                .getLong();
+        return stored == checksum.getValue();
+    }
+
+    /**
+     * Buffered channel writer that checksums everything it writes
+     */
+    private static final class ChecksumWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 checksum = new CRC32();
+
+        ChecksumWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Gets buffer that has at least count bytes of free space
+         */
+        ByteBuffer require(int count) throws IOException {
+
+            if (buffer.remaining() < count) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void write(byte[] bytes) throws IOException {
+
+            if (bytes.length > buffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > buffer.remaining()) {
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        /**
+         * Writes buffered data followed by the checksum trailer
+         * @return written checksum
+         */
+        long finish() throws IOException {
+
+            flush();
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(checksum.getValue());
+            trailer.flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            return checksum.getValue();
+        }
+
+        private void flush() throws IOException {
+
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+
+            checksum.update(data.duplicate());
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of a file region through memory-mapped windows
+     */
+    private static final class MappedReader {
+
+        private final FileChannel channel;
+        private final long end;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedReader(FileChannel channel, long start, long end) throws IOException {
+
+            this.channel = channel;
+            this.end = end;
+            map(start);
+        }
+
+        /**
+         * Gets buffer positioned at the next unread byte that has
+         * at least count bytes remaining
+         */
+        ByteBuffer require(int count) throws IOException {
+
+            if (window.remaining() < count) {
+                map(windowStart + window.position());
+                if (window.remaining() < count) {
+                    throw new IOException("Unexpected end of snapshot");
+                }
+            }
+            return window;
+        }
+
+        void read(byte[] bytes) throws IOException {
+
+            if (bytes.length <= MAX_WINDOW_SIZE) {
+                require(bytes.length).get(bytes);
+                return;
+            }
+            throw new IOException("Snapshot string is too long");
+        }
+
+        private void map(long position) throws IOException {
+
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAX_WINDOW_SIZE, end - position));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.arnasRad.vismawarehouse.utils;
+
+import com.arnasRad.vismawarehouse.model.Warehouse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a warehouse loaded from a .csv file up to date with the file.
+ * Directory of the file is watched with a WatchService; when the file is
+ * created or modified, a new Warehouse is loaded and its indexes are built
+ * (see Warehouse.prepareIndexes) on the watcher's background thread, and it
+ * is swapped in atomically once complete, so no query pays for the build.
+ * Queries never wait for a reload: getWarehouse returns the previous
+ * instance until the new one is ready, and callers holding the previous
+ * instance can keep using it.
+ *
+ * Snapshots are used only if requested. Each load replays the log of the
+ * file (see Utilities.loadWarehouse), and changes of the log trigger
+ * a reload as well.
+ *
+ * A reload that fails (e.g. because the file is only partially written)
+ * keeps the current warehouse; the next change of the file triggers
+ * another reload.
+ */
+public class WarehouseWatcher implements Closeable {
+
+    // changes closer to each other than this are handled by a single reload
+    private static final long QUIET_PERIOD_MILLIS = 200;
+
+    private final String fileName;
+    private final boolean snapshot;
+    private final Path file;
+    private final Path log;
+    private final WatchService watchService;
+    private final Thread thread;
+    private final AtomicReference<Warehouse> warehouse = new AtomicReference<>();
+    private volatile int reloadCount;
+    private volatile Exception lastFailure;
+
+    /**
+     * Constructor
+     * Loads the file without a snapshot and starts watching it for changes
+     * @param fileName name of the .csv file to load and watch
+     * @throws IOException thrown if the file cannot be read or watched
+     * @throws ParseException thrown if the file contains an invalid date
+     */
+    public WarehouseWatcher(String fileName) throws IOException, ParseException {
+
+        this(fileName, false);
+    }
+
+    /**
+     * Constructor
+     * Loads the file and starts watching it for changes
+     * @param fileName name of the .csv file to load and watch
+     * @param snapshot true to load the file through its snapshot
+     * @throws IOException thrown if the file cannot be read or watched
+     * @throws ParseException thrown if the file contains an invalid date
+     */
+    public WarehouseWatcher(String fileName, boolean snapshot) throws IOException, ParseException {
+
+        this.fileName = fileName;
+        this.snapshot = snapshot;
+        this.file = Paths.get(fileName).toAbsolutePath();
+        this.log = WarehouseLog.getLogPath(fileName).toAbsolutePath();
+        this.warehouse.set(load());
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::watch, "warehouse-watcher");
+        this.thread.setDaemon(true);
+        // reloads must not take processor time from queries
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+        this.thread.start();
+    }
+
+    /**
+     * Gets the most recently loaded warehouse
+     * @return current Warehouse object
+     */
+    public Warehouse getWarehouse() {
+
+        return warehouse.get();
+    }
+
+    /**
+     * Getter
+     * @return number of completed reloads since the watcher was created
+     */
+    public int getReloadCount() {
+
+        return reloadCount;
+    }
+
+    /**
+     * Getter
+     * @return exception of the last reload; null if it succeeded
+     */
+    public Exception getLastFailure() {
+
+        return lastFailure;
+    }
+
+    /**
+     * Stops watching the file. Current warehouse stays usable.
+     * @throws IOException thrown if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+
+        watchService.close();
+        thread.interrupt();
+    }
+
+    /**
+     * Watcher thread loop: waits for changes of the file, lets
+     * a burst of changes settle and reloads the file once
+     */
+    private void watch() {
+
+        try {
+            while (true) {
+                if (!isFileChanged(watchService.take())) {
+                    continue;
+                }
+
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    isFileChanged(key);
+                }
+
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher was closed
+        }
+    }
+
+    /**
+     * Consumes events of a watch key
+     * @return true if any of the events concerns the watched file or its log
+     */
+    private boolean isFileChanged(WatchKey key) {
+
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW ||
+                    file.getFileName().equals(event.context()) ||
+                    log.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+
+        try {
+            warehouse.set(load());
+            lastFailure = null;
+            reloadCount++;
+        } catch (IOException | ParseException | RuntimeException e) {
+            lastFailure = e;
+        }
+    }
+
+    private Warehouse load() throws IOException, ParseException {
+
+        Warehouse loaded = Utilities.loadWarehouse(fileName, snapshot).getWarehouse();
+        loaded.prepareIndexes();
+        return loaded;
+    }
+}